@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public class BenchmarkHarness {
+
+    // One benchmark: setUp() runs untimed before every batch, runBatch() is timed
+    // and returns how many operations it performed
+    public interface BenchmarkCase {
+        default void setUp() {
+        }
+
+        long runBatch();
+    }
+
+    // Results are written to a sink so the JIT cannot drop the benchmarked work
+    public static volatile long sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Settings, configurable with -Dbench.warmup, -Dbench.iterations, -Dbench.time and -Dbench.filter
+    private int warmupIterations = Integer.getInteger("bench.warmup", 3);
+    private int measureIterations = Integer.getInteger("bench.iterations", 5);
+    private long iterationMillis = Long.getLong("bench.time", 1000L);
+    private Pattern filter = Pattern.compile(System.getProperty("bench.filter", ".*"));
+
+    private Path output;
+    private List<String> results = new ArrayList<>();
+
+    public BenchmarkHarness(String outputFile) {
+        this.output = Paths.get(outputFile);
+    }
+
+    // Run a benchmark and record ops/sec and bytes allocated per op
+    public void run(String name, String params, BenchmarkCase benchmark) {
+        String label = params.isEmpty() ? name : name + " [" + params + "]";
+        if (!filter.matcher(label).find()) {
+            return;
+        }
+
+        for (int i = 0; i < warmupIterations; i++) {
+            measure(benchmark);
+        }
+
+        double[] throughput = new double[measureIterations];
+        double bytesPerOp = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            double[] iteration = measure(benchmark);
+            throughput[i] = iteration[0];
+            bytesPerOp += iteration[1] / measureIterations;
+        }
+
+        double mean = mean(throughput);
+        double error = error(throughput, mean);
+        System.out.printf(Locale.ROOT, "%-50s %16.1f +- %12.1f ops/s %10.1f B/op%n", label, mean, error, bytesPerOp);
+        results.add(toJson(name, params, throughput, mean, error, bytesPerOp));
+    }
+
+    // One iteration: {ops per second, bytes allocated per op}
+    private double[] measure(BenchmarkCase benchmark) {
+        long thread = Thread.currentThread().getId();
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        // The budget is wall time so slow untimed setUp() calls cannot stretch an iteration
+        long end = System.nanoTime() + iterationMillis * 1_000_000L;
+        while (System.nanoTime() < end) {
+            benchmark.setUp();
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            ops += benchmark.runBatch();
+            nanos += System.nanoTime() - start;
+            bytes += THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+        }
+        return new double[]{ops / (nanos / 1e9), (double) bytes / ops};
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    // Half-width of a 99.9% confidence interval (normal approximation)
+    private static double error(double[] values, double mean) {
+        if (values.length < 2) {
+            return Double.NaN;
+        }
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return 3.29 * Math.sqrt(squares / (values.length - 1)) / Math.sqrt(values.length);
+    }
+
+    // Same shape as JMH's -rf json output, so the usual JMH diff tools can read it
+    private String toJson(String name, String params, double[] raw, double mean, double error, double bytesPerOp) {
+        StringBuilder json = new StringBuilder();
+        json.append("  {\n");
+        json.append("    \"benchmark\": \"").append(name).append("\",\n");
+        json.append("    \"mode\": \"thrpt\",\n");
+        json.append("    \"warmupIterations\": ").append(warmupIterations).append(",\n");
+        json.append("    \"measurementIterations\": ").append(measureIterations).append(",\n");
+        json.append("    \"params\": {");
+        String separator = "";
+        for (String param : params.split(",")) {
+            String[] pair = param.split("=", 2);
+            if (pair.length == 2) {
+                json.append(separator).append('"').append(pair[0].trim()).append("\": \"").append(pair[1].trim()).append('"');
+                separator = ", ";
+            }
+        }
+        json.append("},\n");
+        json.append("    \"primaryMetric\": {\n");
+        json.append("      \"score\": ").append(number(mean)).append(",\n");
+        json.append("      \"scoreError\": ").append(number(error)).append(",\n");
+        json.append("      \"scoreUnit\": \"ops/s\",\n");
+        json.append("      \"rawData\": [[");
+        for (int i = 0; i < raw.length; i++) {
+            json.append(i > 0 ? ", " : "").append(number(raw[i]));
+        }
+        json.append("]]\n");
+        json.append("    },\n");
+        json.append("    \"secondaryMetrics\": {\n");
+        json.append("      \"gc.alloc.rate.norm\": {\"score\": ").append(number(bytesPerOp)).append(", \"scoreUnit\": \"B/op\"},\n");
+        json.append("      \"gc.alloc.rate\": {\"score\": ").append(number(bytesPerOp * mean / (1024 * 1024)))
+                .append(", \"scoreUnit\": \"MB/sec\"}\n");
+        json.append("    }\n");
+        json.append("  }");
+        return json.toString();
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    // Write every recorded result as a JSON array
+    public void writeJson() throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        String json = "[\n" + String.join(",\n", results) + "\n]\n";
+        Files.write(output, json.getBytes(StandardCharsets.UTF_8));
+        System.out.println("Results written to " + output);
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.util.concurrent.Flow;
+
+public class BoardBenchmarks {
+
+    // Benchmark positions, written as the columns played (1-7) from an empty board
+    private static final String[][] FIXTURES = {
+        {"empty", ""},
+        {"mid", "46346751416332132576"},
+        {"nearFull", "5357415545667441434726733511366617732122"},
+        {"won", "46536761561645521247521424421"},
+    };
+
+    // Red to move with 20 empty cells left, a few milliseconds to solve from scratch
+    private static final String ENDGAME = "5357415545667441434726";
+
+    // Boards consumed by one dropCoin batch before they are rebuilt (untimed)
+    private static final int POOL_SIZE = 4096;
+
+    // Copies of each fixture used by the read-only benchmarks (power of two)
+    private static final int COPIES = 16;
+
+    // Board sizes for the scaling benchmarks: {rows, cols, connect}
+    private static final int[][] SIZES = {
+        {6, 7, 4},
+        {9, 10, 4},
+        {20, 20, 5},
+        {50, 50, 5},
+    };
+
+    // Usage: BoardBenchmarks [output.json]
+    public static void main(String[] args) throws IOException {
+        BenchmarkHarness harness = new BenchmarkHarness(args.length > 0 ? args[0] : "target/bench-results.json");
+
+        for (String[] fixture : FIXTURES) {
+            String params = "board=" + fixture[0];
+            // Separate copies keep the JIT from hoisting the read-only calls out of the loop
+            Board[] boards = new Board[COPIES];
+            for (int i = 0; i < COPIES; i++) {
+                boards[i] = replay(fixture[1]);
+            }
+
+            if (!boards[0].isFull() && !fixture[0].equals("won")) {
+                harness.run("Board.dropCoin", params, dropCoin(fixture[1]));
+                int player = fixture[1].length() % 2 + 1;
+                harness.run("Board.dropCoinUndo", params, () -> {
+                    long rows = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        Board board = boards[i & (COPIES - 1)];
+                        int col = i % 7;
+                        while (!board.canPlay(col)) {
+                            col = (col + 1) % 7;
+                        }
+                        rows += board.dropCoin(col, player);
+                        rows += board.undo();
+                    }
+                    BenchmarkHarness.sink += rows;
+                    return 1000;
+                });
+            }
+            harness.run("Board.checkWin", params, () -> {
+                long wins = 0;
+                for (int i = 0; i < 1000; i++) {
+                    wins += boards[i & (COPIES - 1)].checkWin(1 + (i & 1)) ? 1 : 0;
+                }
+                BenchmarkHarness.sink += wins;
+                return 1000;
+            });
+            harness.run("Board.getWinningPositions", params, () -> {
+                long found = 0;
+                for (int i = 0; i < 1000; i++) {
+                    found += boards[i & (COPIES - 1)].getWinningPositions(1 + (i & 1)) != null ? 1 : 0;
+                }
+                BenchmarkHarness.sink += found;
+                return 1000;
+            });
+            harness.run("Board.isFull", params, () -> {
+                long full = 0;
+                for (int i = 0; i < 1000; i++) {
+                    full += boards[i & (COPIES - 1)].isFull() ? 1 : 0;
+                }
+                BenchmarkHarness.sink += full;
+                return 1000;
+            });
+        }
+
+        // Per-move cost should stay flat as the board grows, since only lines through
+        // the new coin are checked
+        for (int[] size : SIZES) {
+            String params = "size=" + size[0] + "x" + size[1] + ", connect=" + size[2];
+            Board half = halfFilled(size[0], size[1], size[2]);
+            harness.run("Board.dropCoinScaling", params, dropCoin(half));
+            Board[] boards = new Board[COPIES];
+            for (int i = 0; i < COPIES; i++) {
+                boards[i] = new Board(half);
+            }
+            harness.run("Board.checkWinScaling", params, () -> {
+                long wins = 0;
+                for (int i = 0; i < 1000; i++) {
+                    wins += boards[i & (COPIES - 1)].checkWin(1 + (i & 1)) ? 1 : 0;
+                }
+                BenchmarkHarness.sink += wins;
+                return 1000;
+            });
+        }
+
+        harness.run("Board.randomPlayout", "", randomPlayout());
+        // Solver and table are built once; every op starts from a cleared table
+        Board mid = replay(FIXTURES[1][1]);
+        TranspositionTable searchTable = new TranspositionTable(16);
+        Solver searchSolver = new Solver(6, 7, 4, searchTable);
+        harness.run("Solver.search", "board=mid, depth=12", () -> {
+            searchTable.clear();
+            SearchResult result = searchSolver.search(mid, 1, 12, 0);
+            BenchmarkHarness.sink += result.getColumn();
+            return 1;
+        });
+        TranspositionTable threatTable = new TranspositionTable(16);
+        Solver threatSolver = new Solver(6, 7, 4, threatTable);
+        threatSolver.setEvaluator(new ThreatEvaluator(6, 7, 4));
+        harness.run("Solver.search", "board=mid, depth=12, evaluator=threat", () -> {
+            threatTable.clear();
+            SearchResult result = threatSolver.search(mid, 1, 12, 0);
+            BenchmarkHarness.sink += result.getColumn();
+            return 1;
+        });
+
+        // Horizon evaluations per second, bit-parallel against a cell-by-cell scan of the same features
+        Evaluator[] evaluators = {new ThreatEvaluator(6, 7, 4), new LineScanEvaluator(6, 7, 4)};
+        for (Evaluator evaluator : evaluators) {
+            for (int f = 1; f <= 2; f++) {
+                Board board = replay(FIXTURES[f][1]);
+                int player = FIXTURES[f][1].length() % 2 + 1;
+                long current = board.getPlayerBits(player);
+                long mask = current | board.getPlayerBits(3 - player);
+                int moves = board.getMoveCount();
+                harness.run("Evaluator.evaluate", "board=" + FIXTURES[f][0] + ", evaluator=" + evaluator.getName(), () -> {
+                    long total = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        // Flip the side to move so the call cannot be hoisted
+                        total += evaluator.evaluate(current, mask, moves + (i & 1));
+                    }
+                    BenchmarkHarness.sink += total;
+                    return 1000;
+                });
+            }
+        }
+
+        // Solving the same endgame again: from scratch (table cleared) and from the solved position cache
+        Board endgame = replay(ENDGAME);
+        long endgameCurrent = endgame.getPlayerBits(1);
+        long endgameMask = endgameCurrent | endgame.getPlayerBits(2);
+        TranspositionTable endgameTable = new TranspositionTable(16);
+        Solver endgameSolver = new Solver(6, 7, 4, endgameTable);
+        harness.run("Solver.solve", "board=endgame, cache=none", () -> {
+            endgameTable.clear();
+            BenchmarkHarness.sink += endgameSolver.solve(endgameCurrent, endgameMask, ENDGAME.length());
+            return 1;
+        });
+        Solver cachedSolver = new Solver(6, 7, 4, 16);
+        cachedSolver.setSolvedCache(new SolvedPositionCache(6, 7, 4, 16));
+        harness.run("Solver.solve", "board=endgame, cache=memory", () -> {
+            BenchmarkHarness.sink += cachedSolver.solve(endgameCurrent, endgameMask, ENDGAME.length());
+            return 1;
+        });
+
+        // Cost of publishing a move to spectators on the mover's thread: nobody watching,
+        // spectators keeping up, and spectators that stopped reading (their frames are dropped)
+        Board fed = replay(FIXTURES[1][1]);
+        for (String watchers : new String[]{"none", "4 reading", "4 stalled"}) {
+            MatchFeed feed = new MatchFeed();
+            for (int i = 0; !watchers.equals("none") && i < 4; i++) {
+                feed.subscribe(new Watcher(watchers.endsWith("reading")));
+            }
+            harness.run("MatchFeed.publish", "spectators=" + watchers, () -> {
+                for (int i = 0; i < 100; i++) {
+                    feed.publish(fed);
+                }
+                return 100;
+            });
+            feed.close();
+        }
+
+        harness.writeJson();
+    }
+
+    // Drop one coin into a fresh copy of the fixture, rebuilding the copies between batches
+    private static BenchmarkHarness.BenchmarkCase dropCoin(String moves) {
+        return dropCoin(replay(moves));
+    }
+
+    private static BenchmarkHarness.BenchmarkCase dropCoin(Board start) {
+        Board[] pool = new Board[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i] = new Board(start);
+        }
+        int player = start.getMoveCount() % 2 + 1;
+        int cols = start.getCols();
+        return new BenchmarkHarness.BenchmarkCase() {
+            @Override
+            public void setUp() {
+                for (int i = 0; i < POOL_SIZE; i++) {
+                    pool[i].copyFrom(start);
+                }
+            }
+
+            @Override
+            public long runBatch() {
+                long rows = 0;
+                for (int i = 0; i < POOL_SIZE; i++) {
+                    Board board = pool[i];
+                    int col = i % cols;
+                    while (!board.canPlay(col)) {
+                        col = (col + 1) % cols;
+                    }
+                    rows += board.dropCoin(col, player);
+                }
+                BenchmarkHarness.sink += rows;
+                return POOL_SIZE;
+            }
+        };
+    }
+
+    // Whole random games from an empty board, one op = one game
+    private static BenchmarkHarness.BenchmarkCase randomPlayout() {
+        Board board = new Board();
+        long[] seed = {0x9E3779B97F4A7C15L};
+        return () -> {
+            long moves = 0;
+            for (int game = 0; game < 100; game++) {
+                board.reset();
+                int player = 1;
+                while (true) {
+                    // xorshift keeps the loop free of allocation and locking
+                    long x = seed[0];
+                    x ^= x << 13;
+                    x ^= x >>> 7;
+                    x ^= x << 17;
+                    seed[0] = x;
+                    int col = (int) ((x >>> 1) % 7);
+                    while (!board.canPlay(col)) {
+                        col = (col + 1) % 7;
+                    }
+                    board.dropCoin(col, player);
+                    moves++;
+                    if (board.checkWin(player) || board.isFull()) {
+                        break;
+                    }
+                    player = 3 - player;
+                }
+            }
+            BenchmarkHarness.sink += moves;
+            return 100;
+        };
+    }
+
+    // Bottom half of every column filled in a pattern without any N in a row
+    private static Board halfFilled(int rows, int cols, int connect) {
+        Board board = new Board(rows, cols, connect);
+        for (int row = 0; row < rows / 2; row++) {
+            for (int col = 0; col < cols; col++) {
+                board.dropCoin(col, 1 + (row + col / 2) % 2);
+            }
+        }
+        return board;
+    }
+
+    // Spectator for the feed benchmark that takes every frame, or never asks for any
+    private static class Watcher implements Flow.Subscriber<MatchFeed.Frame> {
+        private final boolean reading;
+
+        Watcher(boolean reading) {
+            this.reading = reading;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (reading) {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(MatchFeed.Frame frame) {
+            BenchmarkHarness.sink += frame.getMoveCount();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            // Nothing to clean up
+        }
+
+        @Override
+        public void onComplete() {
+            // Nothing to clean up
+        }
+    }
+
+    private static Board replay(String moves) {
+        Board board = new Board();
+        int player = 1;
+        for (char c : moves.toCharArray()) {
+            board.dropCoin(c - '1', player);
+            player = 3 - player;
+        }
+        return board;
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+public class GameStoreBenchmark {
+
+    // Random games on the classic board, plus a few on a bigger one for the by-size query
+    private static final int GAMES = 4_000_000;
+    private static final int BIG_BOARD_GAMES = 250_000;
+
+    // Usage: GameStoreBenchmark [output.json] [games]
+    // e.g. mvn -Pbench verify -Dbench.main=GameStoreBenchmark
+    // Writes random games to a temporary archive, ingests it into a temporary store and
+    // times every query. One op is one stored move, so the results read as moves/s,
+    // except openings, lengths and resultsBySize (op=game), which read one value per game;
+    // "GameArchive.read" decodes the same games from the row format for comparison.
+    public static void main(String[] args) throws IOException {
+        BenchmarkHarness harness = new BenchmarkHarness(args.length > 0 ? args[0] : "target/bench-results.json");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : GAMES;
+
+        Path dir = Files.createTempDirectory("connect4-store");
+        try {
+            Path archive = dir.resolve("games.bin");
+            Path bigArchive = dir.resolve("big-games.bin");
+            writeRandomGames(archive, 6, 7, 4, games, 1);
+            writeRandomGames(bigArchive, 9, 10, 4, BIG_BOARD_GAMES, 2);
+
+            Path storeDir = dir.resolve("store");
+            long start = System.nanoTime();
+            long ingested = GameStore.ingest(archive, storeDir) + GameStore.ingest(bigArchive, storeDir);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "Ingested %d games in %.2f s (%.0f games/s), archive %d bytes, store %d bytes%n",
+                    ingested, seconds, ingested / seconds, Files.size(archive) + Files.size(bigArchive), size(storeDir));
+
+            GameStore all = GameStore.open(storeDir);
+            GameStore classic = all.select(6, 7, 4);
+            long moves = classic.getMoveCount();
+            String params = "games=" + classic.getGameCount() + ", moves=" + moves + ", threads="
+                    + Runtime.getRuntime().availableProcessors();
+
+            // Queries that only read per-game columns count games
+            long gameCount = classic.getGameCount();
+            harness.run("GameStore.openings", params + ", op=game", () -> {
+                BenchmarkHarness.sink += classic.openings()[0];
+                return gameCount;
+            });
+            harness.run("GameStore.lengths", params + ", op=game", () -> {
+                BenchmarkHarness.sink += classic.lengths()[1];
+                return gameCount;
+            });
+            harness.run("GameStore.losingPatterns", params + ", plies=4", () -> {
+                BenchmarkHarness.sink += classic.losingPatterns(4)[0];
+                return moves;
+            });
+            harness.run("GameStore.columns", params, () -> {
+                BenchmarkHarness.sink += classic.columns()[0];
+                return moves;
+            });
+            long allGames = all.getGameCount();
+            harness.run("GameStore.resultsBySize", "games=" + allGames + ", moves=" + all.getMoveCount() + ", op=game", () -> {
+                BenchmarkHarness.sink += all.resultsBySize()[0];
+                return allGames;
+            });
+            harness.run("GameArchive.read", params, () -> {
+                long read = 0;
+                try (GameArchive.Reader reader = GameArchive.openReader(archive)) {
+                    GameRecord record = new GameRecord();
+                    while (reader.read(record)) {
+                        read += record.getMoveCount();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                BenchmarkHarness.sink += read;
+                return read;
+            });
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+        harness.writeJson();
+    }
+
+    // Games of uniformly random moves, reproducible from the seed
+    private static void writeRandomGames(Path file, int rows, int cols, int connect, int games, long seed) throws IOException {
+        Board board = new Board(rows, cols, connect);
+        GameRecord record = new GameRecord();
+        long x = SimulationRunner.mixSeed(seed);
+        try (GameArchive.Writer writer = GameArchive.createWriter(file, rows, cols, connect)) {
+            for (int game = 0; game < games; game++) {
+                board.reset();
+                int player = 1;
+                while (true) {
+                    x ^= x << 13;
+                    x ^= x >>> 7;
+                    x ^= x << 17;
+                    int col = (int) ((x >>> 1) % cols);
+                    while (!board.canPlay(col)) {
+                        col = (col + 1) % cols;
+                    }
+                    board.dropCoin(col, player);
+                    if (board.checkWin(player) || board.isFull()) {
+                        break;
+                    }
+                    player = 3 - player;
+                }
+                record.set(board);
+                writer.write(record);
+            }
+        }
+    }
+
+    private static long size(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+public class LineScanEvaluator implements Evaluator {
+
+    // Baseline for ThreatEvaluator with the same features and weights, found the
+    // obvious way: every window of N cells is walked cell by cell. Scores must match.
+
+    private final int rows;
+    private final int cols;
+    private final int connect;
+    private final int stride;
+
+    // Directions as {column step, row step}
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+    public LineScanEvaluator(int rows, int cols, int connect) {
+        this.rows = rows;
+        this.cols = cols;
+        this.connect = connect;
+        this.stride = rows + 1;
+    }
+
+    @Override
+    public int evaluate(long current, long mask, int moves) {
+        long opponent = current ^ mask;
+        boolean redToMove = moves % 2 == 0;
+        return side(current, opponent, mask, redToMove) - side(opponent, current, mask, !redToMove);
+    }
+
+    private int side(long own, long other, long mask, boolean red) {
+        int twos = 0;
+        int threes = 0;
+        long threats = 0;
+        for (int[] dir : DIRECTIONS) {
+            for (int col = 0; col < cols; col++) {
+                for (int row = 0; row < rows; row++) {
+                    int endCol = col + dir[0] * (connect - 1);
+                    int endRow = row + dir[1] * (connect - 1);
+                    if (endCol >= cols || endRow < 0 || endRow >= rows) {
+                        continue;
+                    }
+                    int count = 0;
+                    long empty = 0;
+                    boolean blocked = false;
+                    for (int i = 0; i < connect; i++) {
+                        long cell = 1L << ((col + dir[0] * i) * stride + row + dir[1] * i);
+                        if ((other & cell) != 0) {
+                            blocked = true;
+                            break;
+                        }
+                        if ((own & cell) != 0) {
+                            count++;
+                        } else {
+                            empty = cell;
+                        }
+                    }
+                    if (blocked) {
+                        continue;
+                    }
+                    if (count == connect - 2) {
+                        twos++;
+                    } else if (count == connect - 1) {
+                        threes++;
+                        threats |= empty;
+                    }
+                }
+            }
+        }
+
+        int good = 0;
+        int bad = 0;
+        int center = 0;
+        for (int col = 0; col < cols; col++) {
+            for (int row = 0; row < rows; row++) {
+                long cell = 1L << (col * stride + row);
+                if ((threats & cell) != 0 && (mask & cell) == 0) {
+                    if ((row % 2 == 0) == red) {
+                        good++;
+                    } else {
+                        bad++;
+                    }
+                }
+                if ((own & cell) != 0 && (col == cols / 2 || col == (cols - 1) / 2)) {
+                    center++;
+                }
+            }
+        }
+        return ThreatEvaluator.OPEN_TWO * twos + ThreatEvaluator.OPEN_THREE * threes
+                + ThreatEvaluator.GOOD_THREAT * good + ThreatEvaluator.THREAT * bad
+                + ThreatEvaluator.CENTER * center;
+    }
+
+    @Override
+    public String getName() {
+        return "lineScan";
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class MatchLogBenchmark {
+
+    // Like GameServer: every thread is an event loop with its own matches, logging a
+    // move in some of them each round and committing before it would reply
+    private static final int MATCHES_PER_THREAD = 256;
+    private static final int MOVES_PER_ROUND = 8;
+    private static final int ROUNDS = 100;
+    private static final int RECOVERY_MOVES = 1_000_000;
+
+    // Usage: MatchLogBenchmark [output.json] [log directory]
+    // e.g. mvn -Pbench verify -Dbench.main=MatchLogBenchmark
+    // One op is one logged move, so the results read as moves/s. "durable" fsyncs every
+    // commit, which is what GameServer --log does; the other cases only write to the page
+    // cache and show what the fsyncs cost. The log directory decides which disk is
+    // measured (a temporary directory by default).
+    public static void main(String[] args) throws IOException {
+        BenchmarkHarness harness = new BenchmarkHarness(args.length > 0 ? args[0] : "target/bench-results.json");
+        Path dir = args.length > 1 ? Files.createTempDirectory(Path.of(args[1]), "connect4-wal")
+                : Files.createTempDirectory("connect4-wal");
+        try {
+            for (boolean force : new boolean[]{true, false}) {
+                for (int threads : new int[]{1, 4, 16}) {
+                    Path logDir = dir.resolve((force ? "durable-" : "buffered-") + threads);
+                    try (MatchLog log = MatchLog.open(logDir, force)) {
+                        moves(harness, log, force, threads);
+                    }
+                }
+            }
+            recovery(harness, dir.resolve("recovery"));
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+        harness.writeJson();
+    }
+
+    private static void moves(BenchmarkHarness harness, MatchLog log, boolean force, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Loop> loops = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            loops.add(new Loop(log));
+        }
+        long commitsBefore = log.getCommitCount();
+        long[] moves = {0};
+        harness.run("MatchLog.moves", (force ? "durable" : "buffered") + ", threads=" + threads
+                + ", movesPerCommit=" + MOVES_PER_ROUND, () -> {
+            long done = 0;
+            try {
+                for (Future<Long> future : pool.invokeAll(loops)) {
+                    done += future.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+            moves[0] += done;
+            return done;
+        });
+        pool.shutdown();
+        // Loops waiting for the same fsync share it
+        System.out.printf(Locale.ROOT, "  %d threads: %.1f moves per write%n",
+                threads, moves[0] / (double) Math.max(1, log.getCommitCount() - commitsBefore));
+    }
+
+    // Opening the log replays every move logged since the last snapshot; the log is
+    // opened without compacting it, so every op replays the same million moves
+    private static void recovery(BenchmarkHarness harness, Path logDir) throws IOException {
+        try (MatchLog log = MatchLog.open(logDir, false)) {
+            Loop loop = new Loop(log);
+            for (long logged = 0; logged < RECOVERY_MOVES; ) {
+                logged += loop.call();
+            }
+        }
+        long[] last = {0};
+        harness.run("MatchLog.recovery", "moves=" + RECOVERY_MOVES, () -> {
+            try (MatchLog log = MatchLog.open(logDir, false, false)) {
+                last[0] = log.getRecoveryNanos();
+                BenchmarkHarness.sink += log.getRecoveredMoves();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return RECOVERY_MOVES;
+        });
+        System.out.printf(Locale.ROOT, "  recovery: %.1f ms per million logged moves%n", last[0] / 1e6 * (1_000_000.0 / RECOVERY_MOVES));
+    }
+
+    // Matches of one thread: columns in turn, 40 moves and then a new match
+    private static class Loop implements Callable<Long> {
+        final MatchLog log;
+        final long[] ids = new long[MATCHES_PER_THREAD];
+        final int[] played = new int[MATCHES_PER_THREAD];
+        int next;
+
+        Loop(MatchLog log) {
+            this.log = log;
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = log.startMatch(6, 7, 4, MatchLog.SERVER);
+            }
+        }
+
+        @Override
+        public Long call() throws IOException {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < MOVES_PER_ROUND; i++) {
+                    int match = next;
+                    next = (next + 1) % ids.length;
+                    log.move(ids[match], played[match] % 7);
+                    if (++played[match] == 40) {
+                        log.endMatch(ids[match], GameRecord.DRAW);
+                        ids[match] = log.startMatch(6, 7, 4, MatchLog.SERVER);
+                        played[match] = 0;
+                    }
+                }
+                log.commit();
+            }
+            return (long) ROUNDS * MOVES_PER_ROUND;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+public class MctsBenchmark {
+
+    // Board sizes as {rows, cols, connect}
+    private static final int[][] SIZES = {{6, 7, 4}, {9, 10, 4}, {20, 20, 5}};
+
+    private static final int NODES = 1 << 20;
+    private static final int BATCH = 4;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Usage: MctsBenchmark [think millis] [thread counts...]
+    // e.g. mvn -Pbench compile && java -cp target/classes MctsBenchmark 2000 1 2 4
+    // Reports rollouts/s, tree memory, garbage collections during the thinks and the
+    // bytes the calling thread allocated per think.
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int[] threadCounts = {1, Runtime.getRuntime().availableProcessors()};
+        if (args.length > 1) {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("Think %d ms, %d nodes per thread x %d bytes = %.1f MB per thread, batch %d%n",
+                millis, NODES, MonteCarloSearch.BYTES_PER_NODE,
+                (double) NODES * MonteCarloSearch.BYTES_PER_NODE / (1 << 20), BATCH);
+        System.out.printf("%8s %8s %14s %10s %8s %10s %12s%n",
+                "board", "threads", "rollouts/s", "depth", "GCs", "GC ms", "B/think");
+
+        for (int[] size : SIZES) {
+            Board board = opening(size[0], size[1], size[2]);
+            for (int threads : threadCounts) {
+                MonteCarloSearch search = new MonteCarloSearch(size[0], size[1], size[2], threads, NODES, BATCH);
+
+                // Warm up the JIT
+                search.search(board, 1, Math.min(millis, 1000));
+
+                long[] gcBefore = gcTotals();
+                long allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+                SearchResult result = search.search(board, 1, millis);
+                allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+                long[] gcAfter = gcTotals();
+                search.shutdown();
+
+                System.out.printf(Locale.ROOT, "%8s %8d %14.0f %10d %8d %10d %12d%n",
+                        size[0] + "x" + size[1], threads, result.getNodes() / (result.getElapsedNanos() / 1e9),
+                        result.getDepth(), gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], allocated);
+            }
+        }
+    }
+
+    // A few center moves so the position is not trivial
+    private static Board opening(int rows, int cols, int connect) {
+        Board board = new Board(rows, cols, connect);
+        int center = cols / 2;
+        board.dropCoin(center, 1);
+        board.dropCoin(center, 2);
+        board.dropCoin(center - 1, 1);
+        board.dropCoin(center + 1, 2);
+        return board;
+    }
+
+    // {collections, milliseconds} over all collectors
+    private static long[] gcTotals() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+}
@@ -0,0 +1,80 @@
+public class SearchBenchmark {
+
+    // Fixed benchmark positions, written as the columns played (1-7) from an empty board
+    private static final String[] POSITIONS = {
+        "4453",
+        "44443",
+        "3554",
+        "4444326",
+        "43443357",
+        "435621",
+        "2252576253462244",
+        "7422341735647741",
+    };
+
+    // Usage: SearchBenchmark [depth] [thread counts...]
+    // e.g. mvn -Pbench compile && java -cp target/classes SearchBenchmark 18 1 2 4 8 16
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int[] threadCounts = {1, 2, 4, 8, 16};
+        if (args.length > 1) {
+            threadCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("Positions: " + POSITIONS.length + ", depth " + depth
+                + ", cores " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %12s %14s %12s %10s %10s%n",
+                "threads", "time (ms)", "nodes", "Mnodes/s", "speedup", "nps x");
+
+        double baseTime = 0;
+        double baseNps = 0;
+        for (int threads : threadCounts) {
+            ParallelSearch search = new ParallelSearch(6, 7, 4, 22, threads);
+
+            // Warm up the JIT on the first position
+            search.search(play(POSITIONS[0]), mask(POSITIONS[0]), POSITIONS[0].length(), depth, 0);
+
+            long nodes = 0;
+            long start = System.nanoTime();
+            for (String position : POSITIONS) {
+                SearchResult result = search.search(play(position), mask(position), position.length(), depth, 0);
+                nodes += result.getNodes();
+            }
+            double millis = (System.nanoTime() - start) / 1e6;
+            double nps = nodes / (millis / 1000.0);
+            search.shutdown();
+
+            if (baseTime == 0) {
+                baseTime = millis;
+                baseNps = nps;
+            }
+            System.out.printf("%8d %12.1f %14d %12.2f %10.2f %10.2f%n",
+                    threads, millis, nodes, nps / 1e6, baseTime / millis, nps / baseNps);
+        }
+    }
+
+    // Bitboard of the player to move after the given moves
+    private static long play(String moves) {
+        Board board = replay(moves);
+        int player = moves.length() % 2 + 1;
+        return board.getPlayerBits(player);
+    }
+
+    private static long mask(String moves) {
+        Board board = replay(moves);
+        return board.getPlayerBits(1) | board.getPlayerBits(2);
+    }
+
+    private static Board replay(String moves) {
+        Board board = new Board();
+        int player = 1;
+        for (char c : moves.toCharArray()) {
+            board.dropCoin(c - '1', player);
+            player = 3 - player;
+        }
+        return board;
+    }
+}
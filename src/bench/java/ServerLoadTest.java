@@ -0,0 +1,278 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerLoadTest {
+
+    // Loopback clients playing random games against each other through a GameServer.
+    // Reports move round-trip latency (MOVE sent until its MOVED echo arrives) and
+    // finished matches per second.
+
+    private String host;
+    private int port;
+    private int clients;
+    private int clientThreads;
+    private long warmupNanos;
+    private long measureNanos;
+
+    private LongAdder matches = new LongAdder();
+    private CountDownLatch playing; // client threads not yet past the measurement window
+    private CountDownLatch reading; // client threads still reading replies
+    private long[][] latencies; // per client thread, in nanoseconds
+    private int[] latencyCounts;
+    private volatile IOException failure;
+
+    public ServerLoadTest(String host, int port, int clients, int clientThreads, long warmupMillis, long measureMillis) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.clientThreads = clientThreads;
+        this.warmupNanos = warmupMillis * 1_000_000L;
+        this.measureNanos = measureMillis * 1_000_000L;
+        this.latencies = new long[clientThreads][];
+        this.latencyCounts = new int[clientThreads];
+        this.playing = new CountDownLatch(clientThreads);
+        this.reading = new CountDownLatch(clientThreads);
+    }
+
+    // Usage: ServerLoadTest [--matches M] [--threads T] [--loops L] [--seconds S] [--warmup S] [--host H --port P]
+    // Without --host an in-process server with L event loops is started on a free port.
+    // Also runs as mvn -Pbench verify -Dbench.main=ServerLoadTest (with the default options).
+    public static void main(String[] args) throws Exception {
+        int matchCount = 1000;
+        int threads = 2;
+        int loops = Runtime.getRuntime().availableProcessors();
+        long seconds = 10;
+        long warmup = 3;
+        String host = null;
+        int port = Protocol.DEFAULT_PORT;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--matches": matchCount = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--loops": loops = Integer.parseInt(value); break;
+                case "--seconds": seconds = Long.parseLong(value); break;
+                case "--warmup": warmup = Long.parseLong(value); break;
+                case "--host": host = value; break;
+                case "--port": port = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        GameServer server = null;
+        if (host == null) {
+            server = new GameServer(0, loops);
+            server.start();
+            host = "127.0.0.1";
+            port = server.getPort();
+        }
+
+        ServerLoadTest test = new ServerLoadTest(host, port, 2 * matchCount, threads, warmup * 1000, seconds * 1000);
+        test.run();
+        test.printReport(matchCount, seconds);
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    public void run() throws InterruptedException, IOException {
+        Thread[] workers = new Thread[clientThreads];
+        long start = System.nanoTime();
+        for (int t = 0; t < clientThreads; t++) {
+            int index = t;
+            int count = clients / clientThreads + (t < clients % clientThreads ? 1 : 0);
+            workers[t] = new Thread(() -> {
+                try {
+                    drive(index, count, start);
+                } catch (IOException e) {
+                    failure = e;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "load-client-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // One client connection with a local copy of its board to pick legal moves
+    private static class Client {
+        SocketChannel channel;
+        ByteBuffer in = ByteBuffer.allocate(64);
+        ByteBuffer out = ByteBuffer.allocate(8);
+        Board board = new Board();
+        int player;
+        long sentAt;
+    }
+
+    // Run count clients on one selector until the measurement window closes. A closed
+    // client ends its match, and its opponent on another thread would get NOT_IN_MATCH for
+    // a move still on its way: so every thread first stops playing, then stops reading,
+    // and only then are clients closed.
+    private void drive(int index, int count, long start) throws IOException, InterruptedException {
+        Selector selector = Selector.open();
+        SplittableRandom random = new SplittableRandom(index);
+        long[] samples = new long[1 << 16];
+        int sampleCount = 0;
+        long measureFrom = start + warmupNanos;
+        long measureUntil = measureFrom + measureNanos;
+
+        Client[] all = new Client[count];
+        for (int i = 0; i < count; i++) {
+            Client client = new Client();
+            client.channel = SocketChannel.open(new InetSocketAddress(host, port));
+            client.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            client.channel.configureBlocking(false);
+            client.channel.register(selector, SelectionKey.OP_READ, client);
+            send(client, Protocol.JOIN, 6, 7, 4);
+            all[i] = client;
+        }
+
+        boolean stopping = false;
+        try {
+            while (true) {
+                if (!stopping && System.nanoTime() >= measureUntil) {
+                    stopping = true;
+                    playing.countDown();
+                }
+                if (stopping && (playing.getCount() == 0 || failure != null)) {
+                    break;
+                }
+                // While stopping, keep reading the replies to moves already sent
+                selector.select(stopping ? 1 : 100);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Client client = (Client) key.attachment();
+                    if (client.channel.read(client.in) < 0) {
+                        throw new IOException("Server closed a connection");
+                    }
+                    ByteBuffer in = client.in;
+                    in.flip();
+                    while (in.hasRemaining()) {
+                        byte type = in.get(in.position());
+                        int size = Protocol.messageSize(type);
+                        if (in.remaining() < size) {
+                            break;
+                        }
+                        in.get();
+                        long now = System.nanoTime();
+                        switch (type) {
+                            case Protocol.MATCHED:
+                                client.player = in.get();
+                                in.position(in.position() + 3);
+                                client.board.reset();
+                                if (client.player == 1 && !stopping) {
+                                    move(client, random);
+                                }
+                                break;
+                            case Protocol.MOVED: {
+                                int player = in.get();
+                                int col = in.get();
+                                client.board.dropCoin(col, player);
+                                if (player == client.player) {
+                                    if (now >= measureFrom && now < measureUntil) {
+                                        if (sampleCount == samples.length) {
+                                            samples = Arrays.copyOf(samples, samples.length * 2);
+                                        }
+                                        samples[sampleCount++] = now - client.sentAt;
+                                    }
+                                } else if (!stopping && !client.board.checkWin(player) && !client.board.isFull()) {
+                                    move(client, random);
+                                }
+                                break;
+                            }
+                            case Protocol.GAME_OVER:
+                                in.get();
+                                // Count each match once, on Red's side
+                                if (client.player == 1 && now >= measureFrom && now < measureUntil) {
+                                    matches.increment();
+                                }
+                                if (!stopping) {
+                                    send(client, Protocol.JOIN, 6, 7, 4);
+                                }
+                                break;
+                            default:
+                                throw new IOException("Unexpected message " + type + " code " + in.get());
+                        }
+                    }
+                    in.compact();
+                }
+                selector.selectedKeys().clear();
+            }
+        } finally {
+            reading.countDown();
+        }
+
+        reading.await();
+        for (Client client : all) {
+            client.channel.close();
+        }
+        selector.close();
+        latencies[index] = samples;
+        latencyCounts[index] = sampleCount;
+    }
+
+    private static void move(Client client, SplittableRandom random) throws IOException {
+        int col = random.nextInt(client.board.getCols());
+        while (!client.board.canPlay(col)) {
+            col = (col + 1) % client.board.getCols();
+        }
+        client.sentAt = System.nanoTime();
+        send(client, Protocol.MOVE, col);
+    }
+
+    private static void send(Client client, byte type, int... values) throws IOException {
+        ByteBuffer out = client.out;
+        out.clear();
+        out.put(type);
+        for (int value : values) {
+            out.put((byte) value);
+        }
+        out.flip();
+        while (out.hasRemaining()) {
+            client.channel.write(out);
+        }
+    }
+
+    public void printReport(int matchCount, long seconds) {
+        int total = 0;
+        for (int count : latencyCounts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int t = 0; t < clientThreads; t++) {
+            System.arraycopy(latencies[t], 0, all, offset, latencyCounts[t]);
+            offset += latencyCounts[t];
+        }
+        Arrays.sort(all);
+
+        System.out.printf(Locale.ROOT, "%d concurrent matches, %d client threads, %d s measured%n",
+                matchCount, clientThreads, seconds);
+        System.out.printf(Locale.ROOT, "matches/s: %.0f%n", matches.sum() / (double) seconds);
+        System.out.printf(Locale.ROOT, "moves/s:   %.0f%n", total / (double) seconds);
+        if (total > 0) {
+            System.out.printf(Locale.ROOT, "move round trip: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                    percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3,
+                    percentile(all, 0.999) / 1e3, all[all.length - 1] / 1e3);
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class ServerPairingTest {
+
+    // Pairing while the waiting player disconnects. Red waits on one event loop; Yellow
+    // joins from the other loop just as Red hangs up, and a third player joins on
+    // Yellow's loop. However the race goes, Yellow and the third player must end up in a
+    // match together: Yellow is re-paired when the server notices Red is gone, or gets
+    // OPPONENT_LEFT and joins again. A lost handover leaves one of them waiting forever.
+
+    private static final int TIMEOUT_MILLIS = 2000;
+    private static final int SETTLE_MILLIS = 50;
+    private static final int FLOOD_CONNECTIONS = 64;
+    private static final int SPREAD_NANOS = 200_000; // Yellow joins up to this long after Red hangs up
+
+    // Usage: ServerPairingTest [rounds]
+    // Also runs as mvn -Pbench verify -Dbench.main=ServerPairingTest; exits with 1 on a failure.
+    // The race is timing dependent: on one CPU a server that loses the handover fails
+    // about one round in 500, so the default runs 2000 rounds (about two minutes).
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        // Connections are dealt to the loops in turn, so with two loops every round's
+        // connections 0 and 2 share one loop and 1 and 3 the other
+        GameServer server = new GameServer(0, 2);
+        server.start();
+        SplittableRandom random = new SplittableRandom(1);
+        int failures = 0;
+        SocketChannel[] flood = new SocketChannel[2 * FLOOD_CONNECTIONS];
+        try {
+            // Keep Red's loop busy with LEAVEs (harmless outside a match), so its rounds are
+            // long and Red's hang-up often sits in the same round as the handover from Yellow
+            for (int i = 0; i < flood.length; i++) {
+                flood[i] = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()));
+                flood[i].configureBlocking(false);
+            }
+            startFlood(flood);
+            for (int round = 0; round < rounds; round++) {
+                try {
+                    playRound(server.getPort(), random);
+                } catch (IOException e) {
+                    failures++;
+                    System.out.println("Round " + round + " failed: " + e.getMessage());
+                }
+            }
+        } finally {
+            for (SocketChannel channel : flood) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+            server.stop();
+        }
+        System.out.println(rounds - failures + " of " + rounds + " rounds paired the remaining players");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void playRound(int port, SplittableRandom random) throws IOException, InterruptedException {
+        try (Socket red = connect(port); Socket yellow = connect(port); Socket spare = connect(port);
+             Socket third = connect(port)) {
+            spare.shutdownOutput(); // Hangs up: the server closes it on end of stream
+            send(red, Protocol.JOIN, 6, 7, 4);
+            Thread.sleep(2); // Red is waiting by now
+
+            // Red hangs up and Yellow joins a moment later, then the third player joins
+            red.shutdownOutput();
+            spin(random.nextInt(SPREAD_NANOS));
+            send(yellow, Protocol.JOIN, 6, 7, 4);
+            send(third, Protocol.JOIN, 6, 7, 4);
+
+            // Both at once: either may have to join again before the other can be matched
+            StringBuffer seen = new StringBuffer();
+            CompletableFuture<Integer> thirdMatch = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return awaitMatch(third, "third player", seen);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            int yellowPlayer = awaitMatch(yellow, "Yellow", seen);
+            int thirdPlayer;
+            try {
+                thirdPlayer = thirdMatch.join();
+            } catch (CompletionException e) {
+                throw (IOException) e.getCause().getCause();
+            }
+            if (yellowPlayer + thirdPlayer != 3) {
+                throw new IOException("Yellow and the third player are not in the same match:" + seen);
+            }
+
+            // Red of the new match moves; both must see it
+            Socket first = yellowPlayer == 1 ? yellow : third;
+            send(first, Protocol.MOVE, 3);
+            expectMoved(yellow);
+            expectMoved(third);
+        }
+    }
+
+    // Top up the connections on Red's loop (the even ones) whenever they have room
+    private static void startFlood(SocketChannel[] flood) {
+        Thread thread = new Thread(() -> {
+            byte[] leaves = new byte[4096];
+            Arrays.fill(leaves, Protocol.LEAVE);
+            ByteBuffer out = ByteBuffer.wrap(leaves);
+            try {
+                while (true) {
+                    for (int i = 0; i < flood.length; i += 2) {
+                        out.clear();
+                        flood[i].write(out);
+                    }
+                    Thread.sleep(1);
+                }
+            } catch (IOException | InterruptedException e) {
+                // Closed at the end of the test
+            }
+        }, "flood");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket("127.0.0.1", port);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(TIMEOUT_MILLIS);
+        return socket;
+    }
+
+    // Wait for MATCHED and return the player. A match with Red ends in OPPONENT_LEFT
+    // soon after, so a match only counts once nothing follows it for SETTLE_MILLIS;
+    // after OPPONENT_LEFT the player joins again.
+    private static int awaitMatch(Socket socket, String name, StringBuffer seen) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        int player = 0;
+        while (true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch (SocketTimeoutException e) {
+                if (player != 0) {
+                    return player;
+                }
+                throw new IOException("No MATCHED for " + name + " within " + socket.getSoTimeout() + " ms:" + seen);
+            } finally {
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+            }
+            switch (type) {
+                case Protocol.MATCHED:
+                    player = in.readByte();
+                    in.skipBytes(3);
+                    seen.append(' ').append(name).append(" matched as ").append(player);
+                    socket.setSoTimeout(SETTLE_MILLIS);
+                    break;
+                case Protocol.GAME_OVER:
+                    seen.append(' ').append(name).append(" game over ").append(in.readByte());
+                    player = 0;
+                    send(socket, Protocol.JOIN, 6, 7, 4);
+                    break;
+                default:
+                    throw new IOException("Unexpected message " + type + " code " + in.readByte());
+            }
+        }
+    }
+
+    private static void expectMoved(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        try {
+            byte type = in.readByte();
+            if (type != Protocol.MOVED) {
+                throw new IOException("Expected MOVED, got message " + type);
+            }
+            in.skipBytes(2);
+        } catch (SocketTimeoutException e) {
+            throw new IOException("No MOVED within " + TIMEOUT_MILLIS + " ms");
+        }
+    }
+
+    private static void send(Socket socket, byte type, int... values) throws IOException {
+        byte[] message = new byte[1 + values.length];
+        message[0] = type;
+        for (int i = 0; i < values.length; i++) {
+            message[i + 1] = (byte) values[i];
+        }
+        OutputStream out = socket.getOutputStream();
+        out.write(message);
+        out.flush();
+    }
+
+    private static void spin(long nanos) {
+        long until = System.nanoTime() + nanos;
+        while (System.nanoTime() < until) {
+            Thread.onSpinWait();
+        }
+    }
+}
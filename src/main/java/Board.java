@@ -1,172 +1,334 @@
 public class Board {
-    
-    private int[][] grid; // 0 = empty, 1 = player 1 (red), 2 = player 2 (yellow)
-    private int rows = 6;
-    private int cols = 7;
-    
+
+    // Bitboard layout: every column uses (rows + 1) bits, bottom row first.
+    // The spare bit on top of each column is always empty, so walking a line
+    // with a shift can never wrap around into the next column. Boards that do
+    // not fit in one long are spread over several 64-bit words.
+    private long[][] playerBits; // playerBits[1] = player 1 (red), playerBits[2] = player 2 (yellow)
+    private int[] heights; // number of coins in each column
+    private int rows;
+    private int cols;
+    private int connect; // coins in a row needed to win
+    private int stride; // bits per column (rows + 1)
+    private int[] shifts; // vertical, horizontal and both diagonal line steps
+    private int moveCount;
+
+    // Every move played, in order; entries past moveCount can be redone until a new move is made
+    private int[] moveCols;
+    private byte[] movePlayers;
+    private int historyLength;
+
+    // Zobrist hash of the position and of its mirror image, updated on every move
+    private long hash;
+    private long mirrorHash;
+
+    // First winning line found for each player (start bit, shift, length) and the move that made it
+    private boolean[] won;
+    private int[] winMove;
+    private int[] winStart;
+    private int[] winShift;
+    private int[] winLength;
+
     public Board() {
-        // Initialize empty board
-        grid = new int[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                grid[i][j] = 0;
-            }
+        this(6, 7, 4);
+    }
+
+    public Board(int rows, int cols, int connect) {
+        if (rows < 1 || cols < 1 || connect < 2 || connect > Math.max(rows, cols)) {
+            throw new IllegalArgumentException("Invalid board: " + rows + "x" + cols + ", connect " + connect);
         }
+        this.rows = rows;
+        this.cols = cols;
+        this.connect = connect;
+        stride = rows + 1;
+        shifts = new int[]{1, stride, stride + 1, stride - 1};
+        int words = (cols * stride + 63) / 64;
+        playerBits = new long[3][words];
+        heights = new int[cols];
+        moveCols = new int[rows * cols];
+        movePlayers = new byte[rows * cols];
+        won = new boolean[3];
+        winMove = new int[3];
+        winStart = new int[3];
+        winShift = new int[3];
+        winLength = new int[3];
     }
-    
+
+    // Copy another board, e.g. to try moves without touching the original
+    public Board(Board other) {
+        this(other.rows, other.cols, other.connect);
+        copyFrom(other);
+    }
+
+    // Overwrite this board with another one of the same size, without allocating
+    public void copyFrom(Board other) {
+        if (other.rows != rows || other.cols != cols || other.connect != connect) {
+            throw new IllegalArgumentException("Boards differ in size");
+        }
+        for (int player = 1; player <= 2; player++) {
+            System.arraycopy(other.playerBits[player], 0, playerBits[player], 0, playerBits[player].length);
+        }
+        System.arraycopy(other.heights, 0, heights, 0, heights.length);
+        moveCount = other.moveCount;
+        hash = other.hash;
+        mirrorHash = other.mirrorHash;
+        historyLength = other.historyLength;
+        System.arraycopy(other.moveCols, 0, moveCols, 0, historyLength);
+        System.arraycopy(other.movePlayers, 0, movePlayers, 0, historyLength);
+        System.arraycopy(other.won, 0, won, 0, won.length);
+        System.arraycopy(other.winMove, 0, winMove, 0, winMove.length);
+        System.arraycopy(other.winStart, 0, winStart, 0, winStart.length);
+        System.arraycopy(other.winShift, 0, winShift, 0, winShift.length);
+        System.arraycopy(other.winLength, 0, winLength, 0, winLength.length);
+    }
+
     // Drop a coin in a column
     public int dropCoin(int col, int player) {
-        // Check if column is valid
-        if (col < 0 || col >= cols) {
+        // Check if column and player are valid
+        if (col < 0 || col >= cols || player < 1 || player > 2) {
             return -1;
         }
-        
-        // Find the lowest empty row in this column
-        for (int row = rows - 1; row >= 0; row--) {
-            if (grid[row][col] == 0) {
-                grid[row][col] = player;
-                return row; // Return the row where coin was placed
-            }
+
+        if (heights[col] == rows) {
+            return -1; // Column is full
         }
-        
-        return -1; // Column is full
+
+        historyLength = moveCount; // A new move replaces anything that could be redone
+        EngineMetrics.countDrop();
+        return play(col, player);
     }
-    
-    // Check if someone won
-    public boolean checkWin(int player) {
-        // Check horizontal
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols - 3; col++) {
-                if (grid[row][col] == player &&
-                    grid[row][col + 1] == player &&
-                    grid[row][col + 2] == player &&
-                    grid[row][col + 3] == player) {
-                    return true;
-                }
-            }
+
+    private int play(int col, int player) {
+        int height = heights[col];
+        int bit = col * stride + height;
+        playerBits[player][bit >>> 6] |= 1L << bit;
+        heights[col] = height + 1;
+        hash ^= zobrist(player, bit);
+        mirrorHash ^= zobrist(player, (cols - 1 - col) * stride + height);
+        moveCols[moveCount] = col;
+        movePlayers[moveCount] = (byte) player;
+        moveCount++;
+        if (moveCount > historyLength) {
+            historyLength = moveCount;
         }
-        
-        // Check vertical
-        for (int row = 0; row < rows - 3; row++) {
-            for (int col = 0; col < cols; col++) {
-                if (grid[row][col] == player &&
-                    grid[row + 1][col] == player &&
-                    grid[row + 2][col] == player &&
-                    grid[row + 3][col] == player) {
-                    return true;
-                }
+
+        if (!won[player]) {
+            EngineMetrics.countWinCheck();
+            checkLinesThrough(bit, player);
+            if (won[player]) {
+                winMove[player] = moveCount;
             }
         }
-        
-        // Check diagonal (bottom-left to top-right)
-        for (int row = 3; row < rows; row++) {
-            for (int col = 0; col < cols - 3; col++) {
-                if (grid[row][col] == player &&
-                    grid[row - 1][col + 1] == player &&
-                    grid[row - 2][col + 2] == player &&
-                    grid[row - 3][col + 3] == player) {
-                    return true;
-                }
-            }
+
+        return rows - 1 - height; // Return the row where coin was placed
+    }
+
+    // Take back the last move; returns its column, or -1 if there is nothing to undo
+    public int undo() {
+        if (moveCount == 0) {
+            return -1;
         }
-        
-        // Check diagonal (top-left to bottom-right)
-        for (int row = 0; row < rows - 3; row++) {
-            for (int col = 0; col < cols - 3; col++) {
-                if (grid[row][col] == player &&
-                    grid[row + 1][col + 1] == player &&
-                    grid[row + 2][col + 2] == player &&
-                    grid[row + 3][col + 3] == player) {
-                    return true;
-                }
-            }
+        int col = moveCols[moveCount - 1];
+        int player = movePlayers[moveCount - 1];
+        if (won[player] && winMove[player] == moveCount) {
+            won[player] = false;
         }
-        
-        return false;
+        moveCount--;
+        heights[col]--;
+        int bit = col * stride + heights[col];
+        playerBits[player][bit >>> 6] &= ~(1L << bit);
+        hash ^= zobrist(player, bit);
+        mirrorHash ^= zobrist(player, (cols - 1 - col) * stride + heights[col]);
+        return col;
     }
-    
-    // Get winning positions (returns array of [row, col] positions)
-    public int[][] getWinningPositions(int player) {
-        // Check horizontal
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols - 3; col++) {
-                if (grid[row][col] == player &&
-                    grid[row][col + 1] == player &&
-                    grid[row][col + 2] == player &&
-                    grid[row][col + 3] == player) {
-                    return new int[][]{{row, col}, {row, col + 1}, {row, col + 2}, {row, col + 3}};
-                }
-            }
+
+    // Play the last undone move again; returns its column, or -1 if there is nothing to redo
+    public int redo() {
+        if (moveCount == historyLength) {
+            return -1;
         }
-        
-        // Check vertical
-        for (int row = 0; row < rows - 3; row++) {
-            for (int col = 0; col < cols; col++) {
-                if (grid[row][col] == player &&
-                    grid[row + 1][col] == player &&
-                    grid[row + 2][col] == player &&
-                    grid[row + 3][col] == player) {
-                    return new int[][]{{row, col}, {row + 1, col}, {row + 2, col}, {row + 3, col}};
-                }
+        int col = moveCols[moveCount];
+        play(col, movePlayers[moveCount]);
+        return col;
+    }
+
+    public boolean canUndo() {
+        return moveCount > 0;
+    }
+
+    public boolean canRedo() {
+        return moveCount < historyLength;
+    }
+
+    // Column of the index-th move played (0 = first move)
+    public int getMove(int index) {
+        return moveCols[index];
+    }
+
+    // Player who made the index-th move
+    public int getMovePlayer(int index) {
+        return movePlayers[index];
+    }
+
+    // Random key for a player's coin on a bit, computed on the fly (splitmix64) so
+    // boards need no key tables
+    private static long zobrist(int player, int bit) {
+        long z = (bit * 2L + player) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Look for N in a row through the coin that was just placed
+    private void checkLinesThrough(int bit, int player) {
+        long[] bits = playerBits[player];
+        for (int shift : shifts) {
+            int below = countRun(bits, bit, -shift);
+            int above = countRun(bits, bit, shift);
+            if (below + above + 1 >= connect) {
+                won[player] = true;
+                winStart[player] = bit - below * shift;
+                winShift[player] = shift;
+                winLength[player] = below + above + 1;
+                return;
             }
         }
-        
-        // Check diagonal (bottom-left to top-right)
-        for (int row = 3; row < rows; row++) {
-            for (int col = 0; col < cols - 3; col++) {
-                if (grid[row][col] == player &&
-                    grid[row - 1][col + 1] == player &&
-                    grid[row - 2][col + 2] == player &&
-                    grid[row - 3][col + 3] == player) {
-                    return new int[][]{{row, col}, {row - 1, col + 1}, {row - 2, col + 2}, {row - 3, col + 3}};
-                }
+    }
+
+    // Count the player's coins next to a bit, stepping by shift (at most connect - 1 steps)
+    private int countRun(long[] bits, int bit, int shift) {
+        int count = 0;
+        int limit = cols * stride;
+        for (int next = bit + shift; count < connect - 1 && next >= 0 && next < limit; next += shift) {
+            if ((bits[next >>> 6] & (1L << next)) == 0) {
+                break;
             }
+            count++;
         }
-        
-        // Check diagonal (top-left to bottom-right)
-        for (int row = 0; row < rows - 3; row++) {
-            for (int col = 0; col < cols - 3; col++) {
-                if (grid[row][col] == player &&
-                    grid[row + 1][col + 1] == player &&
-                    grid[row + 2][col + 2] == player &&
-                    grid[row + 3][col + 3] == player) {
-                    return new int[][]{{row, col}, {row + 1, col + 1}, {row + 2, col + 2}, {row + 3, col + 3}};
-                }
-            }
+        return count;
+    }
+
+    // Check if someone won
+    public boolean checkWin(int player) {
+        return player >= 1 && player <= 2 && won[player];
+    }
+
+    // Get winning positions (returns array of [row, col] positions)
+    public int[][] getWinningPositions(int player) {
+        if (!checkWin(player)) {
+            return null;
+        }
+
+        int[][] positions = new int[winLength[player]][];
+        for (int i = 0; i < positions.length; i++) {
+            int bit = winStart[player] + i * winShift[player];
+            positions[i] = new int[]{rows - 1 - bit % stride, bit / stride};
         }
-        
-        return null;
+        return positions;
     }
-    
+
     // Check if board is full (tie)
     public boolean isFull() {
-        for (int col = 0; col < cols; col++) {
-            if (grid[0][col] == 0) {
-                return false;
-            }
-        }
-        return true;
+        return moveCount == rows * cols;
     }
-    
+
     // Get cell value
     public int getCell(int row, int col) {
-        return grid[row][col];
+        int bit = col * stride + rows - 1 - row;
+        long mask = 1L << bit;
+        if ((playerBits[1][bit >>> 6] & mask) != 0) {
+            return 1;
+        }
+        if ((playerBits[2][bit >>> 6] & mask) != 0) {
+            return 2;
+        }
+        return 0;
     }
-    
+
     // Reset the board
     public void reset() {
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                grid[i][j] = 0;
-            }
+        for (int word = 0; word < playerBits[1].length; word++) {
+            playerBits[1][word] = 0;
+            playerBits[2][word] = 0;
+        }
+        for (int col = 0; col < cols; col++) {
+            heights[col] = 0;
         }
+        moveCount = 0;
+        historyLength = 0;
+        hash = 0;
+        mirrorHash = 0;
+        won[1] = false;
+        won[2] = false;
     }
-    
+
+    // Check if a coin can still be dropped in a column
+    public boolean canPlay(int col) {
+        return col >= 0 && col < cols && heights[col] < rows;
+    }
+
+    // Number of coins in a column
+    public int getHeight(int col) {
+        return heights[col];
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    // True when the whole bitboard fits in one long (needed by Solver and OpeningBook)
+    public boolean fitsInLong() {
+        return cols * stride <= 64;
+    }
+
+    // Raw bitboard of one player's coins (see layout above); only for boards that fit in a long
+    public long getPlayerBits(int player) {
+        if (!fitsInLong()) {
+            throw new IllegalStateException("Board " + rows + "x" + cols + " does not fit in a 64-bit bitboard");
+        }
+        return playerBits[player][0];
+    }
+
+    // 64-bit identity of the position (same coins = same hash, whatever the move order)
+    public long getHash() {
+        return hash;
+    }
+
+    // Hash of the left/right mirror image of the position
+    public long getMirrorHash() {
+        return mirrorHash;
+    }
+
+    // Same for a position and its mirror image; use isMirrorCanonical() to map columns back
+    public long getCanonicalHash() {
+        return Math.min(hash, mirrorHash);
+    }
+
+    // True when the canonical hash is the mirror image's, so columns must be flipped
+    public boolean isMirrorCanonical() {
+        return mirrorHash < hash;
+    }
+
+    // Mirror image of a single-long bitboard (see layout above): columns in reverse order
+    public static long mirrorBits(long bits, int rows, int cols) {
+        int stride = rows + 1;
+        long column = (1L << stride) - 1;
+        long mirrored = 0;
+        for (int col = 0, to = (cols - 1) * stride; col < cols; col++, to -= stride) {
+            mirrored |= ((bits >>> (col * stride)) & column) << to;
+        }
+        return mirrored;
+    }
+
     public int getRows() {
         return rows;
     }
-    
+
     public int getCols() {
         return cols;
     }
-}
\ No newline at end of file
+
+    public int getConnect() {
+        return connect;
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.function.IntConsumer;
+
+import javafx.scene.Node;
+
+public interface BoardView {
+
+    // Draws a Board for GameScreen. Views read the board they were made for and are only
+    // used on the JavaFX thread. Geometry: coins of the given radius, gap pixels apart,
+    // 10 pixels of padding around them.
+
+    Node getNode();
+
+    // Show the cell as it is on the board now; animate lets a coin that was just dropped fall into place
+    void updateCell(int row, int col, boolean animate);
+
+    // Put stars on the winning coins
+    void showWin(int[][] positions);
+
+    // Take all stars off again
+    void hideWin();
+
+    // Show every cell as it is on the board, e.g. after a reset or a jump in a replay
+    void redraw();
+
+    // Column under a click goes to onColumnClicked
+    void setOnColumnClicked(IntConsumer onColumnClicked);
+
+    // Build the view chosen with -Dconnect4.render: grid (a node per cell), canvas (one
+    // Canvas with animated drops) or auto (canvas for boards of more than 64 cells)
+    static BoardView create(Board board, double radius, double gap) {
+        String renderer = System.getProperty("connect4.render", "auto");
+        switch (renderer) {
+            case "grid":
+                return new GridBoardView(board, radius, gap);
+            case "canvas":
+                return new CanvasBoardView(board, radius, gap);
+            case "auto":
+                return board.getRows() * board.getCols() > 64 ? new CanvasBoardView(board, radius, gap)
+                        : new GridBoardView(board, radius, gap);
+            default:
+                throw new IllegalArgumentException("Unknown renderer: " + renderer);
+        }
+    }
+}
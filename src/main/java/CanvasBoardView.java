@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+public class CanvasBoardView implements BoardView {
+
+    // The whole board on one Canvas, so the scene graph stays the same size however big
+    // the board is. Nothing is redrawn as a whole after the first frame: a move repaints
+    // its own cell, and a falling coin repaints only the strip it left plus the cells
+    // under it, so a frame costs the same on a 6x7 and a 20x20 board. The timer only
+    // runs while coins are falling.
+
+    private static final Color BACKGROUND = Color.web("#87CEEB");
+    private static final double PADDING = 10;
+
+    // Star drawn on winning coins, for a 40 pixel coin (see GridBoardView)
+    private static final double[] STAR_X = {0, 4, 15, 6, 10, 0, -10, -6, -15, -4};
+    private static final double[] STAR_Y = {-15, -5, -5, 2, 12, 6, 12, 2, -5, -5};
+
+    // A coin falling from the top of the board takes this long to reach the bottom
+    private static final double FALL_SECONDS = 0.35;
+
+    private final Board board;
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+    private final double radius;
+    private final double size; // coin including its stroke
+    private final double pitch; // distance between neighbouring coins
+    private final double gravity; // pixels per second squared
+    private final boolean[][] falling; // cell is the target of a coin still in the air, drawn empty
+    private final boolean[][] winning;
+    private final double[] starX = new double[STAR_X.length];
+    private final double[] starY = new double[STAR_Y.length];
+    private final List<Drop> drops = new ArrayList<>();
+    private final AnimationTimer timer;
+    private IntConsumer onColumnClicked = col -> { };
+
+    public CanvasBoardView(Board board, double radius, double gap) {
+        this.board = board;
+        this.radius = radius;
+        this.size = 2 * radius + 2;
+        this.pitch = size + gap;
+        double height = board.getRows() * pitch;
+        this.gravity = 2 * height / (FALL_SECONDS * FALL_SECONDS);
+        falling = new boolean[board.getRows()][board.getCols()];
+        winning = new boolean[board.getRows()][board.getCols()];
+
+        canvas = new Canvas(2 * PADDING + board.getCols() * pitch - gap, 2 * PADDING + height - gap);
+        gc = canvas.getGraphicsContext2D();
+        canvas.setOnMouseClicked(e -> {
+            int col = (int) Math.floor((e.getX() - PADDING) / pitch);
+            if (col >= 0 && col < board.getCols()) {
+                onColumnClicked.accept(col);
+            }
+        });
+        timer = new AnimationTimer() {
+            private long last;
+
+            @Override
+            public void start() {
+                last = 0;
+                super.start();
+            }
+
+            @Override
+            public void handle(long now) {
+                double seconds = last == 0 ? 0 : Math.min(0.05, (now - last) / 1e9);
+                last = now;
+                step(seconds);
+            }
+        };
+        redraw();
+    }
+
+    @Override
+    public Node getNode() {
+        return canvas;
+    }
+
+    @Override
+    public void updateCell(int row, int col, boolean animate) {
+        land(col);
+        if (animate && board.getCell(row, col) != 0) {
+            falling[row][col] = true;
+            drops.add(new Drop(row, col, coinColor(board.getCell(row, col))));
+            if (drops.size() == 1) {
+                timer.start();
+            }
+        }
+        drawCell(row, col);
+    }
+
+    @Override
+    public void showWin(int[][] positions) {
+        for (int[] pos : positions) {
+            winning[pos[0]][pos[1]] = true;
+            drawCell(pos[0], pos[1]);
+        }
+    }
+
+    @Override
+    public void hideWin() {
+        for (int row = 0; row < board.getRows(); row++) {
+            for (int col = 0; col < board.getCols(); col++) {
+                if (winning[row][col]) {
+                    winning[row][col] = false;
+                    drawCell(row, col);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void redraw() {
+        for (int col = 0; col < board.getCols(); col++) {
+            land(col);
+        }
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        for (int row = 0; row < board.getRows(); row++) {
+            for (int col = 0; col < board.getCols(); col++) {
+                drawCell(row, col);
+            }
+        }
+    }
+
+    @Override
+    public void setOnColumnClicked(IntConsumer onColumnClicked) {
+        this.onColumnClicked = onColumnClicked;
+    }
+
+    // Move every falling coin on by some seconds, repainting only what it covered and covers
+    private void step(double seconds) {
+        for (int i = drops.size() - 1; i >= 0; i--) {
+            Drop drop = drops.get(i);
+            double before = drop.y;
+            drop.velocity += gravity * seconds;
+            drop.y = Math.min(cellY(drop.row), drop.y + drop.velocity * seconds);
+            repaintStrip(drop.col, before);
+            if (drop.y >= cellY(drop.row)) {
+                drops.remove(i);
+                falling[drop.row][drop.col] = false;
+                drawCell(drop.row, drop.col);
+            } else {
+                drawCoin(cellX(drop.col), drop.y, drop.color);
+            }
+        }
+        if (drops.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    // Finish the coin falling in a column, if any, so it shows in its cell
+    private void land(int col) {
+        for (int i = 0; i < drops.size(); i++) {
+            Drop drop = drops.get(i);
+            if (drop.col == col) {
+                drops.remove(i);
+                falling[drop.row][col] = false;
+                repaintStrip(col, drop.y);
+                drawCell(drop.row, col);
+                break;
+            }
+        }
+        if (drops.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    // Clear a coin-sized area of a column at y and redraw the cells it overlapped
+    private void repaintStrip(int col, double y) {
+        gc.setFill(BACKGROUND);
+        gc.fillRect(cellX(col), y, size, size);
+        int first = Math.max(0, (int) Math.floor((y - PADDING) / pitch));
+        int last = Math.min(board.getRows() - 1, (int) Math.floor((y + size - PADDING) / pitch));
+        for (int row = first; row <= last; row++) {
+            drawCell(row, col);
+        }
+    }
+
+    private void drawCell(int row, int col) {
+        double x = cellX(col);
+        double y = cellY(row);
+        gc.setFill(BACKGROUND);
+        gc.fillRect(x, y, size, size);
+        int cell = falling[row][col] ? 0 : board.getCell(row, col);
+        drawCoin(x, y, cell == 0 ? Color.WHITE : coinColor(cell));
+        if (winning[row][col] && !falling[row][col]) {
+            double scale = radius / 40;
+            double centerX = x + size / 2;
+            double centerY = y + size / 2;
+            for (int i = 0; i < STAR_X.length; i++) {
+                starX[i] = centerX + STAR_X[i] * scale;
+                starY[i] = centerY + STAR_Y[i] * scale;
+            }
+            gc.setFill(Color.GOLD);
+            gc.fillPolygon(starX, starY, STAR_X.length);
+            gc.setStroke(Color.ORANGE);
+            gc.setLineWidth(1.5);
+            gc.strokePolygon(starX, starY, STAR_X.length);
+        }
+    }
+
+    // Coin whose bounding box (stroke included) starts at x, y
+    private void drawCoin(double x, double y, Color color) {
+        gc.setFill(color);
+        gc.fillOval(x + 1, y + 1, 2 * radius, 2 * radius);
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(2);
+        gc.strokeOval(x + 1, y + 1, 2 * radius, 2 * radius);
+    }
+
+    private double cellX(int col) {
+        return PADDING + col * pitch;
+    }
+
+    private double cellY(int row) {
+        return PADDING + row * pitch;
+    }
+
+    private static Color coinColor(int player) {
+        return player == 1 ? Color.RED : Color.YELLOW;
+    }
+
+    // A coin on its way down to (row, col), starting in the top row
+    private class Drop {
+        final int row;
+        final int col;
+        final Color color;
+        double y = PADDING;
+        double velocity;
+
+        Drop(int row, int col, Color color) {
+            this.row = row;
+            this.col = col;
+            this.color = color;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+public class ComputerPlayer implements MoveProvider {
+
+    // Searches run one at a time on a daemon thread, never on the JavaFX thread
+    private static final ExecutorService SEARCH_THREAD = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "connect4-ai");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Opening book file, configurable with -Dconnect4.book (see OpeningBookGenerator)
+    private static final String BOOK_FILE = System.getProperty("connect4.book", "connect4-book.bin");
+
+    // Heuristic at the search horizon, configurable with -Dconnect4.ai.eval (threat or none)
+    private static final String EVALUATOR = System.getProperty("connect4.ai.eval", "threat");
+
+    // Solved endgames are remembered in this file across games and restarts, off unless -Dconnect4.cache is set
+    private static final String CACHE_FILE = System.getProperty("connect4.cache");
+
+    // Tree nodes per MCTS thread (MonteCarloSearch.BYTES_PER_NODE bytes each) and rollouts per leaf
+    private static final int MCTS_NODES = 1 << 20;
+    private static final int MCTS_BATCH = 4;
+
+    private ParallelSearch search; // null when the board is too big for the bitboard solver
+    private MonteCarloSearch mcts; // plays instead of the solver on big boards
+    private OpeningBook book; // null when there is no book for this board size
+    private SolvedPositionCache solvedCache; // null unless -Dconnect4.cache is set
+    private Thread saveOnExit; // saves the cache if the application quits during a game
+    private int maxDepth;
+    private long timeLimitMillis;
+
+    public ComputerPlayer(int rows, int cols, int connect, int maxDepth, long timeLimitMillis, int threads) {
+        this.maxDepth = maxDepth;
+        this.timeLimitMillis = timeLimitMillis;
+        if ((rows + 1) * cols <= 64) {
+            this.search = new ParallelSearch(rows, cols, connect, 21, threads);
+            search.setEvaluator(Evaluator.fromName(EVALUATOR, rows, cols, connect));
+            this.book = OpeningBook.openIfPresent(Paths.get(BOOK_FILE), rows, cols, connect);
+            if (CACHE_FILE != null) {
+                this.solvedCache = SolvedPositionCache.open(Paths.get(CACHE_FILE), rows, cols, connect, 20);
+                search.setSolvedCache(solvedCache);
+                saveOnExit = new Thread(this::saveCache, "connect4-cache-save");
+                Runtime.getRuntime().addShutdownHook(saveOnExit);
+            }
+        } else {
+            this.mcts = new MonteCarloSearch(rows, cols, connect, threads, MCTS_NODES, MCTS_BATCH);
+        }
+    }
+
+    // Opening book first, then an iterative deepening search (MCTS on big boards) on the search thread
+    @Override
+    public CompletableFuture<Integer> requestMove(Board board, int player, Consumer<SearchResult> progress) {
+        CompletableFuture<Integer> move = new CompletableFuture<>();
+        if (EngineMetrics.ENABLED) {
+            long requested = System.nanoTime();
+            move.thenRun(() -> EngineMetrics.recordMoveLatency(System.nanoTime() - requested)); // Not when cancelled
+        }
+
+        if (search == null) {
+            Board copy = new Board(board);
+            move.whenComplete((col, error) -> {
+                if (move.isCancelled()) {
+                    mcts.stop();
+                }
+            });
+            SEARCH_THREAD.execute(() -> {
+                try {
+                    SearchResult result = mcts.search(copy, player, timeLimitMillis, 0, System.nanoTime(),
+                            progress, move::isDone);
+                    if (result != null) {
+                        move.complete(result.getColumn());
+                    }
+                } catch (RuntimeException e) {
+                    move.completeExceptionally(e);
+                }
+            });
+            return move;
+        }
+
+        // Copy the position now so the search never touches the live board
+        long current = board.getPlayerBits(player);
+        long mask = current | board.getPlayerBits(3 - player);
+        int moves = board.getMoveCount();
+
+        // Known openings are answered straight from the book
+        if (book != null && moves <= book.getMaxPly()) {
+            int col = book.getMove(current, mask);
+            if (col >= 0) {
+                move.complete(col);
+                return move;
+            }
+        }
+
+        // Cancelling the future aborts the search (see ParallelSearch for the start-up race)
+        move.whenComplete((col, error) -> {
+            if (move.isCancelled()) {
+                search.stop();
+            }
+        });
+        SEARCH_THREAD.execute(() -> {
+            try {
+                SearchResult result = search.search(current, mask, moves, maxDepth, timeLimitMillis,
+                        progress, move::isDone);
+                if (result != null) {
+                    move.complete(result.getColumn());
+                }
+            } catch (RuntimeException e) {
+                move.completeExceptionally(e);
+            }
+        });
+        return move;
+    }
+
+    // Abandon the current search and release the helper threads once it has returned
+    @Override
+    public void shutdown() {
+        if (search == null) {
+            mcts.stop();
+            SEARCH_THREAD.execute(mcts::shutdown);
+            return;
+        }
+        search.stop();
+        SEARCH_THREAD.execute(() -> {
+            search.shutdown();
+            if (solvedCache != null) {
+                saveCache();
+                try {
+                    Runtime.getRuntime().removeShutdownHook(saveOnExit);
+                } catch (IllegalStateException e) {
+                    // Already exiting, the hook saves again
+                }
+            }
+        });
+    }
+
+    private void saveCache() {
+        try {
+            solvedCache.save();
+        } catch (IOException e) {
+            System.out.println("Could not save solved position cache: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+public class EloRatings {
+
+    // Rating arithmetic for Tournament. Scores count a win as 1 and a draw as 1/2; Elo
+    // differences are -400 log10(1 / score - 1). Confidence intervals are 95% normal
+    // approximations; per game variance is taken from the actual win/draw/loss mix.
+
+    public static final double Z95 = 1.959964;
+
+    // Games of virtual draws every engine gets against each opponent when fitting
+    // ratings, so an engine that won or lost everything still gets a finite rating
+    private static final double PRIOR_DRAWS = 2;
+
+    private static final double ELO_PER_NATURAL = 400 / Math.log(10);
+
+    private EloRatings() {
+    }
+
+    public static double score(long wins, long draws, long losses) {
+        long games = wins + draws + losses;
+        return games == 0 ? 0.5 : (wins + 0.5 * draws) / games;
+    }
+
+    // Elo difference for a score; infinite for 0 and 1
+    public static double eloDifference(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    public static double expectedScore(double eloDifference) {
+        return 1 / (1 + Math.pow(10, -eloDifference / 400));
+    }
+
+    // {low, high} 95% bounds on the Elo difference of one engine against another
+    public static double[] eloInterval(long wins, long draws, long losses) {
+        long games = wins + draws + losses;
+        if (games == 0) {
+            return new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        }
+        double score = score(wins, draws, losses);
+        double margin = Z95 * Math.sqrt(variance(wins, draws, losses, score) / games);
+        return new double[]{eloDifference(score - margin), eloDifference(score + margin)};
+    }
+
+    // Per game variance of the score
+    private static double variance(double wins, double draws, double losses, double score) {
+        double games = wins + draws + losses;
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+                + losses * score * score) / games;
+    }
+
+    // Log-likelihood ratio of "the Elo difference is elo1" against "it is elo0", in the
+    // usual normal approximation of the trinomial SPRT. Half a virtual win and half a
+    // virtual loss keep the variance above zero while every game ends the same way.
+    public static double sprtLlr(long wins, long draws, long losses, double elo0, double elo1) {
+        double w = wins + 0.5;
+        double l = losses + 0.5;
+        double games = w + draws + l;
+        double score = (w + 0.5 * draws) / games;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return games * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance(w, draws, l, score));
+    }
+
+    // SPRT bounds {lower, upper} for false positive rate alpha and false negative rate beta
+    public static double[] sprtBounds(double alpha, double beta) {
+        return new double[]{Math.log(beta / (1 - alpha)), Math.log((1 - beta) / alpha)};
+    }
+
+    // Ratings of all engines from the points[i][j] engine i scored in games[i][j] games
+    // against engine j: a Bradley-Terry fit by minorization-maximization, with BayesElo's
+    // virtual draws as the prior. Returns {ratings, 95% margins}, ratings averaging 0.
+    // Margins come from the diagonal of the Fisher information, so they describe each
+    // engine against the field.
+    public static double[][] fit(double[][] points, double[][] games) {
+        int n = points.length;
+        double[] wins = new double[n];
+        double[][] played = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j && (games[i][j] > 0 || games[j][i] > 0)) {
+                    played[i][j] = games[i][j] + PRIOR_DRAWS;
+                    wins[i] += points[i][j] + PRIOR_DRAWS / 2;
+                }
+            }
+        }
+
+        double[] gamma = new double[n];
+        Arrays.fill(gamma, 1);
+        for (int iteration = 0; iteration < 10_000; iteration++) {
+            double change = 0;
+            double logSum = 0;
+            for (int i = 0; i < n; i++) {
+                double denominator = 0;
+                for (int j = 0; j < n; j++) {
+                    if (played[i][j] > 0) {
+                        denominator += played[i][j] / (gamma[i] + gamma[j]);
+                    }
+                }
+                double updated = denominator > 0 ? wins[i] / denominator : 1;
+                change = Math.max(change, Math.abs(Math.log(updated / gamma[i])));
+                gamma[i] = updated;
+                logSum += Math.log(updated);
+            }
+            double mean = Math.exp(logSum / n);
+            for (int i = 0; i < n; i++) {
+                gamma[i] /= mean;
+            }
+            if (change < 1e-12) {
+                break;
+            }
+        }
+
+        double[] ratings = new double[n];
+        double[] margins = new double[n];
+        for (int i = 0; i < n; i++) {
+            ratings[i] = ELO_PER_NATURAL * Math.log(gamma[i]);
+            double information = 0;
+            for (int j = 0; j < n; j++) {
+                if (played[i][j] > 0) {
+                    double p = gamma[i] / (gamma[i] + gamma[j]);
+                    information += played[i][j] * p * (1 - p);
+                }
+            }
+            margins[i] = information > 0 ? Z95 * ELO_PER_NATURAL / Math.sqrt(information) : Double.POSITIVE_INFINITY;
+        }
+        return new double[][]{ratings, margins};
+    }
+}
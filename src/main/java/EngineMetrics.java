@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class EngineMetrics {
+
+    // Off unless -Dconnect4.metrics=true. The flag is a static final constant, so when it
+    // is off the JIT removes every recording call below from the hot paths.
+    public static final boolean ENABLED = Boolean.getBoolean("connect4.metrics");
+
+    // Per-game JSON files go here when set, e.g. -Dconnect4.metrics.dir=metrics
+    private static final String DUMP_DIR = System.getProperty("connect4.metrics.dir");
+
+    private static final LongAdder drops = new LongAdder();
+    private static final LongAdder winChecks = new LongAdder();
+    private static final LongAdder searches = new LongAdder();
+    private static final LongAdder searchNodes = new LongAdder();
+    private static final LongAdder searchNanos = new LongAdder();
+    private static final LongAdder ttProbes = new LongAdder();
+    private static final LongAdder ttHits = new LongAdder();
+    private static final LongAdder expandedNodes = new LongAdder(); // nodes whose children were searched
+    private static final LongAdder children = new LongAdder(); // moves searched below them
+    private static final LatencyHistogram moveLatency = new LatencyHistogram();
+    private static final LatencyHistogram uiUpdates = new LatencyHistogram();
+    private static final LatencyHistogram hintLatency = new LatencyHistogram();
+
+    private static final AtomicLong dumpCount = new AtomicLong();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(),
+                        new ObjectName("connect4:type=EngineMetrics"));
+            } catch (JMException e) {
+                System.out.println("Could not register metrics MBean: " + e.getMessage());
+            }
+        }
+    }
+
+    private EngineMetrics() {
+    }
+
+    public static void countDrop() {
+        if (ENABLED) {
+            drops.increment();
+        }
+    }
+
+    public static void countWinCheck() {
+        if (ENABLED) {
+            winChecks.increment();
+        }
+    }
+
+    // One finished search; the solver counts locally and reports once per search
+    public static void recordSearch(long nodes, long nanos, long probes, long hits, long expanded, long searched) {
+        if (ENABLED) {
+            searches.increment();
+            searchNodes.add(nodes);
+            searchNanos.add(nanos);
+            ttProbes.add(probes);
+            ttHits.add(hits);
+            expandedNodes.add(expanded);
+            children.add(searched);
+        }
+    }
+
+    // Time from asking the computer for a move until it was chosen
+    public static void recordMoveLatency(long nanos) {
+        if (ENABLED) {
+            moveLatency.record(nanos);
+        }
+    }
+
+    // Time the JavaFX thread spent showing one move
+    public static void recordUiUpdate(long nanos) {
+        if (ENABLED) {
+            uiUpdates.record(nanos);
+        }
+    }
+
+    // Time from a move until the hint row had an answer for every column (see HintAnalyzer)
+    public static void recordHintLatency(long nanos) {
+        if (ENABLED) {
+            hintLatency.record(nanos);
+        }
+    }
+
+    public static void reset() {
+        for (LongAdder adder : new LongAdder[]{drops, winChecks, searches, searchNodes, searchNanos,
+                ttProbes, ttHits, expandedNodes, children}) {
+            adder.reset();
+        }
+        moveLatency.reset();
+        uiUpdates.reset();
+        hintLatency.reset();
+    }
+
+    // Counters at one point in time, to report what happened during a single game
+    public static class Snapshot {
+        private long[] counters;
+        private long[] moveLatency;
+        private long[] uiUpdates;
+        private long[] hintLatency;
+
+        private Snapshot() {
+            counters = new long[]{drops.sum(), winChecks.sum(), searches.sum(), searchNodes.sum(), searchNanos.sum(),
+                    ttProbes.sum(), ttHits.sum(), expandedNodes.sum(), children.sum()};
+            moveLatency = EngineMetrics.moveLatency.snapshot();
+            uiUpdates = EngineMetrics.uiUpdates.snapshot();
+            hintLatency = EngineMetrics.hintLatency.snapshot();
+        }
+    }
+
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    // Write what happened since start as a JSON file in the dump directory (if one is set)
+    public static void dumpGame(Snapshot start, String result, int moves) {
+        if (!ENABLED || DUMP_DIR == null) {
+            return;
+        }
+        Snapshot end = new Snapshot();
+        long[] c = new long[end.counters.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = end.counters[i] - start.counters[i];
+        }
+        long[] latency = subtract(end.moveLatency, start.moveLatency);
+        long[] ui = subtract(end.uiUpdates, start.uiUpdates);
+        long[] hints = subtract(end.hintLatency, start.hintLatency);
+
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n");
+        json.append("  \"result\": \"").append(result).append("\",\n");
+        json.append("  \"moves\": ").append(moves).append(",\n");
+        json.append("  \"drops\": ").append(c[0]).append(",\n");
+        json.append("  \"winChecks\": ").append(c[1]).append(",\n");
+        json.append("  \"searches\": ").append(c[2]).append(",\n");
+        json.append("  \"searchNodes\": ").append(c[3]).append(",\n");
+        json.append("  \"nodesPerSecond\": ").append(format(ratio(c[3], c[4] / 1e9))).append(",\n");
+        json.append("  \"ttHitRate\": ").append(format(ratio(c[6], c[5]))).append(",\n");
+        json.append("  \"branchingFactor\": ").append(format(ratio(c[8], c[7]))).append(",\n");
+        json.append("  \"moveLatencyMillis\": ").append(percentiles(latency, 1e6)).append(",\n");
+        json.append("  \"uiUpdateMicros\": ").append(percentiles(ui, 1e3)).append(",\n");
+        json.append("  \"hintLatencyMillis\": ").append(percentiles(hints, 1e6)).append("\n");
+        json.append("}\n");
+
+        try {
+            Path dir = Paths.get(DUMP_DIR);
+            Files.createDirectories(dir);
+            Path file = dir.resolve("game-" + System.currentTimeMillis() + "-" + dumpCount.incrementAndGet() + ".json");
+            Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("Could not write game metrics: " + e.getMessage());
+        }
+    }
+
+    private static long[] subtract(long[] end, long[] start) {
+        long[] result = new long[end.length];
+        for (int i = 0; i < end.length; i++) {
+            result[i] = end[i] - start[i];
+        }
+        return result;
+    }
+
+    private static String percentiles(long[] counts, double unit) {
+        return "{\"count\": " + LatencyHistogram.count(counts)
+                + ", \"p50\": " + format(LatencyHistogram.percentile(counts, 0.50) / unit)
+                + ", \"p99\": " + format(LatencyHistogram.percentile(counts, 0.99) / unit) + "}";
+    }
+
+    private static double ratio(double numerator, double denominator) {
+        return denominator == 0 ? 0 : numerator / denominator;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static class Bean implements EngineMetricsMXBean {
+        @Override
+        public long getDropCount() {
+            return drops.sum();
+        }
+
+        @Override
+        public long getWinCheckCount() {
+            return winChecks.sum();
+        }
+
+        @Override
+        public long getSearchCount() {
+            return searches.sum();
+        }
+
+        @Override
+        public long getSearchNodes() {
+            return searchNodes.sum();
+        }
+
+        @Override
+        public double getNodesPerSecond() {
+            return ratio(searchNodes.sum(), searchNanos.sum() / 1e9);
+        }
+
+        @Override
+        public double getTranspositionHitRate() {
+            return ratio(ttHits.sum(), ttProbes.sum());
+        }
+
+        @Override
+        public double getBranchingFactor() {
+            return ratio(children.sum(), expandedNodes.sum());
+        }
+
+        @Override
+        public long getMoveCount() {
+            return LatencyHistogram.count(moveLatency.snapshot());
+        }
+
+        @Override
+        public double getMoveLatencyP50Millis() {
+            return LatencyHistogram.percentile(moveLatency.snapshot(), 0.50) / 1e6;
+        }
+
+        @Override
+        public double getMoveLatencyP99Millis() {
+            return LatencyHistogram.percentile(moveLatency.snapshot(), 0.99) / 1e6;
+        }
+
+        @Override
+        public double getUiUpdateP50Micros() {
+            return LatencyHistogram.percentile(uiUpdates.snapshot(), 0.50) / 1e3;
+        }
+
+        @Override
+        public double getUiUpdateP99Micros() {
+            return LatencyHistogram.percentile(uiUpdates.snapshot(), 0.99) / 1e3;
+        }
+
+        @Override
+        public double getHintLatencyP50Millis() {
+            return LatencyHistogram.percentile(hintLatency.snapshot(), 0.50) / 1e6;
+        }
+
+        @Override
+        public double getHintLatencyP99Millis() {
+            return LatencyHistogram.percentile(hintLatency.snapshot(), 0.99) / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            EngineMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+public interface EngineMetricsMXBean {
+
+    // Registered as connect4:type=EngineMetrics when -Dconnect4.metrics=true
+
+    long getDropCount();
+
+    long getWinCheckCount();
+
+    long getSearchCount();
+
+    long getSearchNodes();
+
+    double getNodesPerSecond();
+
+    double getTranspositionHitRate();
+
+    double getBranchingFactor();
+
+    long getMoveCount();
+
+    double getMoveLatencyP50Millis();
+
+    double getMoveLatencyP99Millis();
+
+    double getUiUpdateP50Micros();
+
+    double getUiUpdateP99Micros();
+
+    double getHintLatencyP50Millis();
+
+    double getHintLatencyP99Millis();
+
+    void reset();
+}
@@ -0,0 +1,21 @@
+public interface Evaluator {
+
+    // Static score of an undecided position for the player to move, positive = good for
+    // them. Positions use the Solver's single-long bitboard: current = coins of the player
+    // to move, mask = all coins, moves = coins played (Red moves when it is even).
+    int evaluate(long current, long mask, int moves);
+
+    String getName();
+
+    // Build an evaluator for a board size from a name: threat or none (null)
+    static Evaluator fromName(String name, int rows, int cols, int connect) {
+        switch (name) {
+            case "none":
+                return null;
+            case "threat":
+                return new ThreatEvaluator(rows, cols, connect);
+            default:
+                throw new IllegalArgumentException("Unknown evaluator: " + name);
+        }
+    }
+}
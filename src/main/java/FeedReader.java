@@ -0,0 +1,233 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+public class FeedReader implements Closeable {
+
+    // Plays games into a MatchFeed without running any engine: saved games from a
+    // GameArchive at a chosen number of moves per second, or a live game from a
+    // FeedServer socket as fast as the moves arrive. Speed 0 is fast-forward: no
+    // waiting at all, and spectators that coalesce frames only draw the final board.
+
+    // Pause after each archived game before the next one starts
+    private static final long GAME_PAUSE_NANOS = 1_500_000_000L;
+
+    private final MatchFeed feed = new MatchFeed();
+    private final String description;
+    private final GameArchive.Reader archive; // exactly one of archive and socket is set
+    private final int game; // archive game to play, -1 for all of them
+    private final SocketChannel socket;
+    private final ByteBuffer in = ByteBuffer.allocate(256);
+    private Board board; // the game being played into the feed
+    private Thread thread;
+    private volatile double movesPerSecond;
+    private volatile boolean closed;
+
+    private FeedReader(String description, GameArchive.Reader archive, int game, SocketChannel socket,
+                       double movesPerSecond) {
+        this.description = description;
+        this.archive = archive;
+        this.game = game;
+        this.socket = socket;
+        this.movesPerSecond = movesPerSecond;
+    }
+
+    // An existing file is read as a game archive, anything else is a feed address ("host" or "host:port")
+    public static FeedReader open(String source, double movesPerSecond) throws IOException {
+        Path file = Paths.get(source);
+        if (Files.isRegularFile(file)) {
+            return openArchive(file, -1, movesPerSecond);
+        }
+        int colon = source.lastIndexOf(':');
+        String host = colon < 0 ? source : source.substring(0, colon);
+        int port = colon < 0 ? Protocol.DEFAULT_FEED_PORT : Integer.parseInt(source.substring(colon + 1));
+        return connect(host, port);
+    }
+
+    // Replay one game of an archive (numbered from 0), or all of them in order with game = -1
+    public static FeedReader openArchive(Path file, int game, double movesPerSecond) throws IOException {
+        GameArchive.Reader archive = GameArchive.openReader(file);
+        FeedReader reader = new FeedReader(file.toString(), archive, game, null, movesPerSecond);
+        reader.board = new Board(archive.getRows(), archive.getCols(), archive.getConnect());
+        reader.feed.publish(reader.board);
+        return reader;
+    }
+
+    // Follow a live game; blocks until the feed has said which board it is played on
+    public static FeedReader connect(String host, int port) throws IOException {
+        SocketChannel socket = SocketChannel.open(new InetSocketAddress(host, port));
+        FeedReader reader = new FeedReader(host + ":" + port, null, -1, socket, 0);
+        try {
+            while (reader.board == null && reader.readMessages()) {
+                // Moves sent with the first game are published before anyone subscribes
+            }
+            if (reader.board == null) {
+                throw new IOException("Feed closed before a game started");
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return reader;
+    }
+
+    // Start playing into the feed; subscribe to it first
+    public void start() {
+        thread = new Thread(archive != null ? this::replayArchive : this::followSocket, "connect4-replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public MatchFeed getFeed() {
+        return feed;
+    }
+
+    // Board size of the first game
+    public int getRows() {
+        return feed.getLatest().getRows();
+    }
+
+    public int getCols() {
+        return feed.getLatest().getCols();
+    }
+
+    public int getConnect() {
+        return feed.getLatest().getConnect();
+    }
+
+    public boolean isLive() {
+        return socket != null;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public double getMovesPerSecond() {
+        return movesPerSecond;
+    }
+
+    // Takes effect at once, also in the middle of a wait
+    public void setMovesPerSecond(double movesPerSecond) {
+        this.movesPerSecond = movesPerSecond;
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(thread);
+        feed.close();
+        if (archive != null) {
+            archive.close();
+        } else {
+            socket.close();
+        }
+    }
+
+    private void replayArchive() {
+        GameRecord record = new GameRecord();
+        try {
+            for (int index = 0; !closed && archive.read(record); index++) {
+                if (game >= 0 && index != game) {
+                    continue;
+                }
+                if (board.getMoveCount() > 0) {
+                    board.reset();
+                    feed.publish(board);
+                }
+                long last = System.nanoTime();
+                for (int i = 0; i < record.getMoveCount() && !closed; i++) {
+                    last = waitAfter(last, false);
+                    board.dropCoin(record.getMove(i), i % 2 + 1);
+                    feed.publish(board);
+                }
+                waitAfter(last, true);
+                if (game >= 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("Replay of " + description + " stopped: " + e.getMessage());
+            }
+        }
+        feed.close();
+    }
+
+    // Wait one move (or the pause after a game) from last at the current speed; returns when it ended
+    private long waitAfter(long last, boolean gamePause) {
+        while (!closed) {
+            double speed = movesPerSecond;
+            long now = System.nanoTime();
+            if (speed <= 0) {
+                return now;
+            }
+            long due = last + (gamePause ? GAME_PAUSE_NANOS : (long) (1e9 / speed));
+            if (now >= due) {
+                return now;
+            }
+            LockSupport.parkNanos(due - now);
+        }
+        return System.nanoTime();
+    }
+
+    private void followSocket() {
+        try {
+            while (!closed && readMessages()) {
+                // Every message is published as it arrives
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("Feed " + description + " stopped: " + e.getMessage());
+            }
+        }
+        feed.close();
+    }
+
+    // Read from the socket and publish what arrived; false at the end of the feed
+    private boolean readMessages() throws IOException {
+        if (socket.read(in) < 0) {
+            return false;
+        }
+        in.flip();
+        while (in.hasRemaining()) {
+            byte type = in.get(in.position());
+            int size = Protocol.messageSize(type);
+            if (size < 0) {
+                throw new IOException("Unknown message in feed");
+            }
+            if (in.remaining() < size) {
+                break;
+            }
+            in.get();
+            switch (type) {
+                case Protocol.MATCHED:
+                    in.get(); // Always SPECTATOR
+                    board = new Board(in.get() & 0xFF, in.get() & 0xFF, in.get() & 0xFF);
+                    feed.publish(board);
+                    break;
+                case Protocol.MOVED: {
+                    int player = in.get();
+                    int col = in.get() & 0xFF;
+                    if (board == null || board.dropCoin(col, player) < 0) {
+                        throw new IOException("Feed sent an impossible move");
+                    }
+                    feed.publish(board);
+                    break;
+                }
+                default:
+                    in.position(in.position() + size - 1); // GAME_OVER can be seen on the board
+                    break;
+            }
+        }
+        in.compact();
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Flow;
+
+public class FeedServer implements Closeable {
+
+    // Streams a MatchFeed to spectators on local sockets (see Protocol for the messages).
+    // Every connection is a subscriber of its own, so a spectator that reads slowly only
+    // delays itself; it sends just the moves its spectator has not seen yet, or starts
+    // the game over after a restart or undo.
+
+    private final MatchFeed feed;
+    private final ServerSocketChannel serverChannel;
+    private final Thread acceptThread;
+    private volatile boolean running = true;
+
+    // Listen on the loopback interface; port 0 picks a free one
+    public FeedServer(MatchFeed feed, int port) throws IOException {
+        this.feed = feed;
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        acceptThread = new Thread(this::acceptLoop, "connect4-feed-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverChannel.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                Spectator spectator = new Spectator(channel);
+                feed.subscribe(spectator);
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Feed accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // One connected spectator; the feed calls it from one thread at a time
+    private class Spectator implements Flow.Subscriber<MatchFeed.Frame> {
+        private final SocketChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocate(1024);
+        private Board shown; // what the spectator has been sent, null before the first frame
+        private Flow.Subscription subscription;
+        private long sequence = -1;
+        private boolean resultSent;
+
+        Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+            // Start from the current position; frames queued meanwhile are older and skipped
+            MatchFeed.Frame latest = feed.getLatest();
+            if (latest != null) {
+                onNext(latest);
+            }
+        }
+
+        @Override
+        public void onNext(MatchFeed.Frame frame) {
+            if (frame.getSequence() <= sequence) {
+                return;
+            }
+            sequence = frame.getSequence();
+            try {
+                int added = shown == null ? -1 : frame.movesAfter(shown);
+                if (added < 0) {
+                    shown = new Board(frame.getRows(), frame.getCols(), frame.getConnect());
+                    resultSent = false;
+                    send(Protocol.MATCHED, Protocol.SPECTATOR, frame.getRows(), frame.getCols(), frame.getConnect());
+                    added = frame.getMoveCount();
+                }
+                for (int i = frame.getMoveCount() - added; i < frame.getMoveCount(); i++) {
+                    int player = i % 2 + 1;
+                    shown.dropCoin(frame.getMove(i), player);
+                    send(Protocol.MOVED, player, frame.getMove(i));
+                }
+                if (frame.getResult() != GameRecord.UNFINISHED && !resultSent) {
+                    resultSent = true;
+                    send(Protocol.GAME_OVER, frame.getResult() == GameRecord.DRAW ? Protocol.DRAW : frame.getResult());
+                }
+                flush();
+            } catch (IOException e) {
+                disconnect();
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            disconnect();
+        }
+
+        @Override
+        public void onComplete() {
+            disconnect();
+        }
+
+        private void send(byte type, int... values) throws IOException {
+            if (out.remaining() < 1 + values.length) {
+                flush();
+            }
+            out.put(type);
+            for (int value : values) {
+                out.put((byte) value);
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+
+        private void disconnect() {
+            subscription.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to clean up
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.Locale;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.Label;
+
+public class FrameCounter extends AnimationTimer {
+
+    // Frames per second and frame times of the JavaFX pulse, shown on a Label twice a
+    // second. A running AnimationTimer asks for a pulse every frame, so this measures
+    // how fast the scene can be drawn, also while nothing moves. Useful to compare the
+    // board renderers, e.g. with -Dprism.order=sw for software rendering. Stops by
+    // itself when the label's window goes away.
+
+    private static final long REPORT_NANOS = 500_000_000L;
+
+    private final Label label;
+    private long last; // previous pulse, 0 before the first one
+    private long windowStart;
+    private int frames;
+    private long totalNanos;
+    private long worstNanos;
+
+    public FrameCounter(Label label) {
+        this.label = label;
+    }
+
+    // Turned on with -Dconnect4.fps=true
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("connect4.fps");
+    }
+
+    @Override
+    public void start() {
+        last = 0;
+        super.start();
+    }
+
+    @Override
+    public void handle(long now) {
+        if (label.getScene() == null || label.getScene().getWindow() == null) {
+            stop();
+            return;
+        }
+        if (last == 0) {
+            windowStart = now;
+        } else {
+            long frame = now - last;
+            frames++;
+            totalNanos += frame;
+            worstNanos = Math.max(worstNanos, frame);
+        }
+        last = now;
+        if (now - windowStart >= REPORT_NANOS && frames > 0) {
+            label.setText(String.format(Locale.ROOT, "%.0f fps, %.1f ms/frame (worst %.1f)",
+                    frames * 1e9 / (now - windowStart), totalNanos / 1e6 / frames, worstNanos / 1e6));
+            windowStart = now;
+            frames = 0;
+            totalNanos = 0;
+            worstNanos = 0;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class GameArchive {
+
+    // File layout: header (magic, version, rows, cols, connect as ints), then
+    // GameRecords back to back. Records are streamed through a large buffer, so
+    // archives of millions of games never need to fit in memory.
+    public static final int MAGIC = 0x43344741; // "C4GA"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 20;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // Usage: GameArchive <file> - prints a summary of the games in an archive
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: GameArchive <file>");
+            return;
+        }
+        long start = System.nanoTime();
+        long games = 0;
+        long moves = 0;
+        long[] results = new long[4];
+        try (Reader reader = openReader(Paths.get(args[0]))) {
+            GameRecord record = new GameRecord();
+            while (reader.read(record)) {
+                games++;
+                moves += record.getMoveCount();
+                results[record.getResult()]++;
+            }
+            System.out.printf("%s: %dx%d, connect %d%n", args[0], reader.getRows(), reader.getCols(), reader.getConnect());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games (%.0f games/s), %.1f moves per game%n", games, games / seconds,
+                games == 0 ? 0.0 : (double) moves / games);
+        System.out.printf("Red wins %d, Yellow wins %d, draws %d, unfinished %d%n",
+                results[1], results[2], results[GameRecord.DRAW], results[GameRecord.UNFINISHED]);
+    }
+
+    // Start a new archive, replacing any existing file
+    public static Writer createWriter(Path file, int rows, int cols, int connect) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(connect).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return new Writer(channel, rows, cols);
+    }
+
+    // Add games to an existing archive for the same board, or start a new one
+    public static Writer appendWriter(Path file, int rows, int cols, int connect) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return createWriter(file, rows, cols, connect);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int[] size = readHeader(channel);
+            if (size[0] != rows || size[1] != cols || size[2] != connect) {
+                throw new IOException("Archive " + file + " is for a different board size");
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new Writer(channel, rows, cols);
+    }
+
+    public static Reader openReader(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new Reader(channel, readHeader(channel));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // {rows, cols, connect} from the header; leaves the channel just after it
+    private static int[] readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.position(0);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+            // Keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a game archive");
+        }
+        return new int[]{header.getInt(), header.getInt(), header.getInt()};
+    }
+
+    public static class Writer implements Closeable {
+        private FileChannel channel;
+        private ByteBuffer buffer;
+        private boolean nibbles;
+        private long count;
+
+        private Writer(FileChannel channel, int rows, int cols) {
+            this.channel = channel;
+            this.nibbles = GameRecord.usesNibbles(cols);
+            this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, GameRecord.maxEncodedSize(rows * cols)));
+        }
+
+        public void write(GameRecord record) throws IOException {
+            if (buffer.remaining() < record.encodedSize(nibbles)) {
+                flush();
+            }
+            record.write(buffer, nibbles);
+            count++;
+        }
+
+        // Copy records that were already encoded for this board size (see GameRecord.write)
+        public void writeEncoded(ByteBuffer records, int recordCount) throws IOException {
+            flush();
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+            count += recordCount;
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private FileChannel channel;
+        private ByteBuffer buffer;
+        private boolean nibbles;
+        private boolean endOfFile;
+        private int rows;
+        private int cols;
+        private int connect;
+
+        private Reader(FileChannel channel, int[] size) {
+            this.channel = channel;
+            this.rows = size[0];
+            this.cols = size[1];
+            this.connect = size[2];
+            this.nibbles = GameRecord.usesNibbles(cols);
+            this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, GameRecord.maxEncodedSize(rows * cols)));
+            buffer.flip(); // Start empty
+        }
+
+        // Read the next game into record (reusing its storage); false at the end of the archive
+        public boolean read(GameRecord record) throws IOException {
+            int size = GameRecord.peekSize(buffer, nibbles);
+            while (size < 0 || buffer.remaining() < size) {
+                if (endOfFile) {
+                    if (buffer.hasRemaining()) {
+                        throw new IOException("Game archive is truncated");
+                    }
+                    return false;
+                }
+                buffer.compact();
+                endOfFile = channel.read(buffer) < 0;
+                buffer.flip();
+                size = GameRecord.peekSize(buffer, nibbles);
+            }
+            record.read(buffer, nibbles);
+            return true;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        public int getConnect() {
+            return connect;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import javafx.application.Platform;
+
+public class GameClient {
+
+    // Events from the server, delivered on the JavaFX thread
+    public interface Listener {
+        void onMatched(int player);
+
+        void onMoved(int player, int col);
+
+        void onGameOver(int result);
+
+        void onError(int code);
+
+        void onDisconnected(String reason);
+    }
+
+    private String host;
+    private int port;
+    private Listener listener;
+    private volatile SocketChannel channel;
+    private volatile boolean closing;
+
+    public GameClient(String host, int port, Listener listener) {
+        this.host = host;
+        this.port = port;
+        this.listener = listener;
+    }
+
+    // Parse "host" or "host:port", e.g. from -Dconnect4.server
+    public static GameClient forAddress(String address, Listener listener) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return new GameClient(address, Protocol.DEFAULT_PORT, listener);
+        }
+        return new GameClient(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)), listener);
+    }
+
+    // Connect and ask for an opponent, without blocking the caller
+    public void connect(int rows, int cols, int connect) {
+        Thread reader = new Thread(() -> {
+            try {
+                channel = SocketChannel.open(new InetSocketAddress(host, port));
+                channel.socket().setTcpNoDelay(true);
+                join(rows, cols, connect);
+                readLoop();
+            } catch (IOException e) {
+                if (!closing) {
+                    Platform.runLater(() -> listener.onDisconnected(e.getMessage()));
+                }
+            }
+        }, "connect4-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public void join(int rows, int cols, int connect) {
+        send(Protocol.JOIN, rows, cols, connect);
+    }
+
+    public void sendMove(int col) {
+        send(Protocol.MOVE, col);
+    }
+
+    public void leave() {
+        send(Protocol.LEAVE);
+    }
+
+    public void close() {
+        closing = true;
+        SocketChannel current = channel;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Nothing left to clean up
+            }
+        }
+    }
+
+    private void send(byte type, int... values) {
+        SocketChannel current = channel;
+        if (current == null) {
+            return;
+        }
+        ByteBuffer message = ByteBuffer.allocate(1 + values.length);
+        message.put(type);
+        for (int value : values) {
+            message.put((byte) value);
+        }
+        message.flip();
+        try {
+            synchronized (this) {
+                while (message.hasRemaining()) {
+                    current.write(message);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            Platform.runLater(() -> listener.onDisconnected(e.getMessage()));
+        }
+    }
+
+    private void readLoop() throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(64);
+        while (channel.read(in) >= 0) {
+            in.flip();
+            while (in.hasRemaining()) {
+                byte type = in.get(in.position());
+                int size = Protocol.messageSize(type);
+                if (size < 0) {
+                    throw new IOException("Unknown message from server");
+                }
+                if (in.remaining() < size) {
+                    break;
+                }
+                in.get();
+                dispatch(type, in);
+            }
+            in.compact();
+        }
+        if (!closing) {
+            Platform.runLater(() -> listener.onDisconnected("Server closed the connection"));
+        }
+    }
+
+    private void dispatch(byte type, ByteBuffer in) {
+        switch (type) {
+            case Protocol.MATCHED: {
+                int player = in.get();
+                in.position(in.position() + 3); // Board size, as requested
+                Platform.runLater(() -> listener.onMatched(player));
+                break;
+            }
+            case Protocol.MOVED: {
+                int player = in.get();
+                int col = in.get() & 0xFF;
+                Platform.runLater(() -> listener.onMoved(player, col));
+                break;
+            }
+            case Protocol.GAME_OVER: {
+                int result = in.get();
+                Platform.runLater(() -> listener.onGameOver(result));
+                break;
+            }
+            case Protocol.ERROR: {
+                int code = in.get();
+                Platform.runLater(() -> listener.onError(code));
+                break;
+            }
+            default:
+                in.position(in.position() + Protocol.messageSize(type) - 1);
+                break;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.nio.ByteBuffer;
+
+public class GameRecord {
+
+    // Results
+    public static final int UNFINISHED = 0; // 1 and 2 mean that player won
+    public static final int DRAW = 3;
+
+    // Encoded record: varint (move count << 2 | result), then the columns played.
+    // Boards with at most 16 columns pack two moves per byte (first move in the
+    // high nibble), bigger boards use one byte per move. Players alternate, Red first.
+    private byte[] moves;
+    private int length;
+    private int result;
+
+    public GameRecord() {
+        moves = new byte[64];
+    }
+
+    // Record of the moves played on a board so far
+    public static GameRecord of(Board board) {
+        GameRecord record = new GameRecord();
+        record.set(board);
+        return record;
+    }
+
+    // Overwrite this record with a board's moves, reusing the buffer
+    public void set(Board board) {
+        ensureCapacity(board.getMoveCount());
+        length = board.getMoveCount();
+        for (int i = 0; i < length; i++) {
+            moves[i] = (byte) board.getMove(i);
+        }
+        if (board.checkWin(1)) {
+            result = 1;
+        } else if (board.checkWin(2)) {
+            result = 2;
+        } else {
+            result = board.isFull() ? DRAW : UNFINISHED;
+        }
+    }
+
+    // Play the record onto a board, which is reset first
+    public void replay(Board board) {
+        board.reset();
+        int player = 1;
+        for (int i = 0; i < length; i++) {
+            board.dropCoin(getMove(i), player);
+            player = 3 - player;
+        }
+    }
+
+    public static boolean usesNibbles(int cols) {
+        return cols <= 16;
+    }
+
+    // Largest encoded size for a game on a board with this many cells
+    public static int maxEncodedSize(int cells) {
+        return 5 + cells;
+    }
+
+    public int encodedSize(boolean nibbles) {
+        int header = 1;
+        for (int value = (length << 2) >>> 7; value != 0; value >>>= 7) {
+            header++;
+        }
+        return header + (nibbles ? (length + 1) / 2 : length);
+    }
+
+    public void write(ByteBuffer out, boolean nibbles) {
+        int header = (length << 2) | result;
+        while ((header & ~0x7F) != 0) {
+            out.put((byte) (header | 0x80));
+            header >>>= 7;
+        }
+        out.put((byte) header);
+
+        if (nibbles) {
+            for (int i = 0; i + 1 < length; i += 2) {
+                out.put((byte) (moves[i] << 4 | moves[i + 1]));
+            }
+            if (length % 2 == 1) {
+                out.put((byte) (moves[length - 1] << 4));
+            }
+        } else {
+            out.put(moves, 0, length);
+        }
+    }
+
+    // Size of the record starting at the buffer's position, or -1 if its header is not complete yet
+    public static int peekSize(ByteBuffer in, boolean nibbles) {
+        int header = 0;
+        int position = in.position();
+        for (int i = 0; i < 5; i++) {
+            if (position + i >= in.limit()) {
+                return -1;
+            }
+            int b = in.get(position + i);
+            header |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                int count = header >>> 2;
+                return i + 1 + (nibbles ? (count + 1) / 2 : count);
+            }
+        }
+        throw new IllegalStateException("Corrupt game record");
+    }
+
+    // Overwrite this record with the one at the buffer's position
+    public void read(ByteBuffer in, boolean nibbles) {
+        int header = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            header |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        result = header & 3;
+        length = header >>> 2;
+        ensureCapacity(length);
+
+        if (nibbles) {
+            for (int i = 0; i < length; i += 2) {
+                int b = in.get();
+                moves[i] = (byte) ((b >> 4) & 0xF);
+                if (i + 1 < length) {
+                    moves[i + 1] = (byte) (b & 0xF);
+                }
+            }
+        } else {
+            in.get(moves, 0, length);
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (moves.length < size) {
+            moves = new byte[Math.max(size, moves.length * 2)];
+        }
+    }
+
+    public int getMoveCount() {
+        return length;
+    }
+
+    public int getMove(int index) {
+        return moves[index] & 0xFF;
+    }
+
+    public int getResult() {
+        return result;
+    }
+}
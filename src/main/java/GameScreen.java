@@ -1,18 +1,18 @@
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.layout.GridPane;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.HBox;
-import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.Polygon;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
@@ -21,50 +21,257 @@ public class GameScreen {
     private Stage stage;
     private Board board;
     private int currentPlayer; // 1 or 2
-    private GridPane gridPane;
+    private BoardView view; // draws the board, see BoardView.create
     private Label statusLabel;
     private boolean gameOver;
-    private int[][] winningPositions;
-    private MediaPlayer bgMusicPlayer;
-    private MediaPlayer sfxPlayer;
+    private MoveProvider computer; // null in two-player mode, plays Yellow otherwise
+    private boolean computerThinking;
+    private CompletableFuture<Integer> pendingMove; // computer move being searched, cancelled on restart
+    private ProgressIndicator thinkingIndicator; // spins while the computer thinks
+    private GameClient online; // null unless playing against someone over the network
+    private int localPlayer; // our color when playing online, 0 until matched
+    private int gameId; // bumped on restart so stale computer moves are ignored
+    private double radius; // coin radius, shrinks so big boards still fit the window
+    private double gap; // space between coins
+    private EngineMetrics.Snapshot gameMetrics; // counters when this game started, see EngineMetrics
+    private MatchFeed feed; // this game for spectators, null on a spectator screen
+    private FeedServer feedServer; // null unless -Dconnect4.feed.port is set
+    private MatchFeed watched; // the game a spectator screen shows, null when playing
+    private FeedReader replay; // where the watched game comes from, null for a game in this window's process
+    private boolean ownWindow; // spectator window next to a game: closes instead of going to the menu
+    private Flow.Subscription watching;
+    private final AtomicReference<MatchFeed.Frame> pendingFrame = new AtomicReference<>(); // newest frame not shown yet
+    private long shownSequence = -1;
+    private double resumeSpeed = REPLAY_SPEED; // replay speed to go back to after fast-forward
+    private boolean feedEnded;
+    private HintAnalyzer hints; // null unless hint mode is on
+    private HBox hintRow; // outcome of every column, above the column keys while hints are on
+    private long logId; // this game in the match log, 0 when it is not logged
+    
+    private static MatchLog matchLog; // opened by getMatchLog
+    private static boolean matchLogOpened;
+    
+    // AI budget, configurable with -Dconnect4.ai.depth, -Dconnect4.ai.timeMillis and -Dconnect4.ai.threads
+    private static final int AI_MAX_DEPTH = Integer.getInteger("connect4.ai.depth", 42);
+    private static final long AI_TIME_MILLIS = Long.getLong("connect4.ai.timeMillis", 1500L);
+    private static final int AI_THREADS = Integer.getInteger("connect4.ai.threads", Runtime.getRuntime().availableProcessors());
+    
+    // Spectators can follow games on this local port (see FeedServer), off unless -Dconnect4.feed.port is set
+    private static final int FEED_PORT = Integer.getInteger("connect4.feed.port", 0);
+    
+    // Moves per second when replaying saved games, configurable with -Dconnect4.watch.speed (0 = fast-forward)
+    public static final double REPLAY_SPEED = Double.parseDouble(System.getProperty("connect4.watch.speed", "2"));
+    
+    // Saved games are appended to this archive, configurable with -Dconnect4.archive
+    private static final String ARCHIVE_FILE = System.getProperty("connect4.archive", "connect4-games.bin");
+    
+    // Local games are logged here so they can be resumed after a crash, off unless -Dconnect4.wal is set
+    private static final String MATCH_LOG_DIR = System.getProperty("connect4.wal");
+    
+    // Keys for the columns, in order; columns past the last key are played by clicking
+    private static final String COLUMN_KEYS = "1234567890abcdefghijklmnopqrstuvwxyz";
     
     public GameScreen(Stage stage) {
+        this(stage, false);
+    }
+    
+    public GameScreen(Stage stage, boolean vsComputer) {
+        this(stage, vsComputer, 6, 7, 4);
+    }
+    
+    public GameScreen(Stage stage, boolean vsComputer, int rows, int cols, int connect) {
         this.stage = stage;
-        this.board = new Board();
+        this.board = new Board(rows, cols, connect);
         this.currentPlayer = 1;
         this.gameOver = false;
-        this.winningPositions = null;
+        this.gameMetrics = EngineMetrics.snapshot();
+        if (vsComputer) {
+            this.computer = new ComputerPlayer(rows, cols, connect, AI_MAX_DEPTH, AI_TIME_MILLIS, AI_THREADS);
+        }
+        
+        // Fit the board into roughly 760x520 pixels, never bigger than the classic 40px coins
+        double cellSize = Math.min(760.0 / cols, 520.0 / rows);
+        this.gap = Math.min(5, Math.max(1, Math.floor(cellSize / 16)));
+        this.radius = Math.min(40, Math.floor((cellSize - gap) / 2) - 1);
         
-        // Start background music
-        playBackgroundMusic();
+        // Start background music (loads in the background, keeps playing across games)
+        SoundManager.startMusic();
+    }
+    
+    // Play against someone else through a GameServer ("host" or "host:port")
+    public GameScreen(Stage stage, String serverAddress, int rows, int cols, int connect) {
+        this(stage, false, rows, cols, connect);
+        this.gameOver = true; // Until the server finds an opponent
+        this.online = GameClient.forAddress(serverAddress, new GameClient.Listener() {
+            @Override
+            public void onMatched(int player) {
+                localPlayer = player;
+                board.reset();
+                view.hideWin();
+                view.redraw();
+                currentPlayer = 1;
+                gameOver = false;
+                gameMetrics = EngineMetrics.snapshot();
+                publishPosition();
+                refreshHints();
+                statusLabel.setText(player == 1 ? "You are Red - " + moveHint() : "You are Yellow - waiting for Red...");
+            }
+            
+            @Override
+            public void onMoved(int player, int col) {
+                if (!gameOver && player == currentPlayer) {
+                    handleMove(col);
+                }
+            }
+            
+            @Override
+            public void onGameOver(int result) {
+                // Wins and ties are seen on our own board, only a missing opponent is news
+                if (result == Protocol.OPPONENT_LEFT && !gameOver) {
+                    gameOver = true;
+                    statusLabel.setText("Your opponent left - press Restart for a new match");
+                }
+            }
+            
+            @Override
+            public void onError(int code) {
+                if (code == Protocol.ILLEGAL_MOVE) {
+                    statusLabel.setText("Column is full! Try another column.");
+                }
+            }
+            
+            @Override
+            public void onDisconnected(String reason) {
+                gameOver = true;
+                statusLabel.setText("Disconnected: " + reason);
+            }
+        });
+    }
+    
+    // Watch a saved or live game without playing (see FeedReader)
+    public GameScreen(Stage stage, FeedReader replay) {
+        this(stage, replay.getFeed(), replay.getRows(), replay.getCols(), replay.getConnect());
+        this.replay = replay;
+    }
+    
+    private GameScreen(Stage stage, MatchFeed watched, int rows, int cols, int connect) {
+        this(stage, false, rows, cols, connect);
+        this.watched = watched;
+        this.gameOver = true; // Never takes moves
+    }
+    
+    // Continue a local game found in the match log (see getMatchLog)
+    public static GameScreen resume(Stage stage, MatchLog.Match match) {
+        GameScreen screen = new GameScreen(stage, match.getKind() == MatchLog.LOCAL_VS_COMPUTER,
+                match.getRows(), match.getCols(), match.getConnect());
+        screen.board = match.toBoard();
+        screen.currentPlayer = screen.board.getMoveCount() % 2 + 1;
+        screen.logId = match.getId();
+        return screen;
+    }
+    
+    // The log of unfinished local games, recovered when it is first used; null unless -Dconnect4.wal is set
+    public static MatchLog getMatchLog() {
+        if (!matchLogOpened) {
+            matchLogOpened = true;
+            if (MATCH_LOG_DIR != null) {
+                try {
+                    matchLog = MatchLog.open(Paths.get(MATCH_LOG_DIR));
+                } catch (IOException e) {
+                    System.out.println("Could not open the match log: " + e.getMessage());
+                }
+            }
+        }
+        return matchLog;
+    }
+    
+    // The newest unfinished local game in the match log, or null
+    public static MatchLog.Match getResumableGame() {
+        MatchLog log = getMatchLog();
+        if (log == null) {
+            return null;
+        }
+        MatchLog.Match newest = null;
+        for (MatchLog.Match match : log.getLiveMatches()) {
+            if (match.getKind() == MatchLog.LOCAL_TWO_PLAYER || match.getKind() == MatchLog.LOCAL_VS_COMPUTER) {
+                newest = match;
+            }
+        }
+        return newest;
+    }
+    
+    // Open a window that follows a game; any number of them can watch the same feed
+    public static void openSpectatorWindow(MatchFeed feed) {
+        MatchFeed.Frame latest = feed.getLatest();
+        Stage window = new Stage();
+        GameScreen spectator = new GameScreen(window, feed, latest.getRows(), latest.getCols(), latest.getConnect());
+        spectator.ownWindow = true;
+        spectator.show();
+        window.setTitle("Connect 4 - Spectator");
+        window.setOnHidden(e -> {
+            spectator.stopWatching();
+            if (spectator.hints != null) {
+                spectator.hints.close();
+            }
+        });
+        window.show();
     }
     
     public void show() {
         // Create status label
-        statusLabel = new Label("Player 1's Turn (Red) - Press 1-7");
+        statusLabel = new Label("Player 1's Turn (Red) - " + moveHint());
         statusLabel.setFont(new Font("Courier New", 20));
         
-        // Create column numbers (1-7) above the board
-        HBox columnNumbers = new HBox(5);
+        // Thinking indicator next to the status; it keeps spinning because searches run off the JavaFX thread
+        thinkingIndicator = new ProgressIndicator();
+        thinkingIndicator.setPrefSize(24, 24);
+        thinkingIndicator.setVisible(false);
+        HBox statusBox = new HBox(10, statusLabel, thinkingIndicator);
+        statusBox.setAlignment(Pos.CENTER);
+        
+        // Frame rate next to the status with -Dconnect4.fps=true
+        FrameCounter frameCounter = null;
+        if (FrameCounter.isEnabled()) {
+            Label fpsLabel = new Label();
+            fpsLabel.setFont(new Font("Courier New", 14));
+            statusBox.getChildren().add(fpsLabel);
+            frameCounter = new FrameCounter(fpsLabel);
+        }
+        
+        // Create column keys above the board
+        HBox columnNumbers = new HBox(gap);
         columnNumbers.setAlignment(Pos.CENTER);
-        for (int i = 1; i <= 7; i++) {
-            Label numLabel = new Label(String.valueOf(i));
-            numLabel.setFont(new Font("Courier New", 24));
+        for (int col = 0; col < board.getCols(); col++) {
+            String key = col < COLUMN_KEYS.length() ? String.valueOf(COLUMN_KEYS.charAt(col)) : "";
+            Label numLabel = new Label(key);
+            numLabel.setFont(new Font("Courier New", Math.min(24, Math.max(8, radius))));
             numLabel.setStyle("-fx-font-weight: bold;");
-            numLabel.setPrefWidth(85);
+            numLabel.setPrefWidth(2 * radius + 4);
             numLabel.setAlignment(Pos.CENTER);
             columnNumbers.getChildren().add(numLabel);
         }
         
-        // Create grid for the game board
-        gridPane = new GridPane();
-        gridPane.setAlignment(Pos.CENTER);
-        gridPane.setHgap(5);
-        gridPane.setVgap(5);
-        gridPane.setStyle("-fx-background-color: #87CEEB; -fx-padding: 10;");
+        // Hint row above the column keys, filled by HintAnalyzer in hint mode
+        hintRow = new HBox(gap);
+        hintRow.setAlignment(Pos.CENTER);
+        for (int col = 0; col < board.getCols(); col++) {
+            Label hintLabel = new Label();
+            hintLabel.setFont(new Font("Courier New", Math.min(18, Math.max(8, radius * 0.7))));
+            hintLabel.setStyle("-fx-font-weight: bold;");
+            hintLabel.setPrefWidth(2 * radius + 4);
+            hintLabel.setAlignment(Pos.CENTER);
+            hintRow.getChildren().add(hintLabel);
+        }
+        hintRow.setVisible(false);
+        hintRow.setManaged(false);
         
         // Create the visual board
-        drawBoard();
+        view = BoardView.create(board, radius, gap);
+        view.setOnColumnClicked(col -> {
+            if (!gameOver && !computerThinking) {
+                playerMove(col);
+            }
+        });
         
         // Create restart button
         Button restartButton = new Button("Restart Game");
@@ -75,111 +282,160 @@ public class GameScreen {
         Button menuButton = new Button("Main Menu");
         menuButton.setFont(new Font("Courier New", 16));
         menuButton.setOnAction(e -> {
+            cancelComputerMove();
+            if (computer != null) {
+                computer.shutdown();
+            }
+            endLogged(GameRecord.UNFINISHED); // Left on purpose, not resumed
+            if (online != null) {
+                online.close();
+            }
+            stopWatching();
+            closeFeed();
+            if (hints != null) {
+                hints.close();
+            }
+            if (ownWindow) {
+                stage.close();
+                return;
+            }
             StartScreen startScreen = new StartScreen(stage);
             startScreen.show();
         });
+        if (ownWindow) {
+            menuButton.setText("Close");
+        }
+        
+        // Create undo, redo and save buttons (not available online)
+        Button undoButton = new Button("Undo");
+        undoButton.setFont(new Font("Courier New", 16));
+        undoButton.setOnAction(e -> undoMove());
+        
+        Button redoButton = new Button("Redo");
+        redoButton.setFont(new Font("Courier New", 16));
+        redoButton.setOnAction(e -> redoMove());
+        
+        Button saveButton = new Button("Save Game");
+        saveButton.setFont(new Font("Courier New", 16));
+        saveButton.setOnAction(e -> saveGame());
+        
+        if (online != null) {
+            undoButton.setDisable(true);
+            redoButton.setDisable(true);
+        }
+        
+        // Open another window that follows this game
+        Button spectateButton = new Button("Spectate");
+        spectateButton.setFont(new Font("Courier New", 16));
+        spectateButton.setOnAction(e -> openSpectatorWindow(feed));
+        
+        // Show what every column leads to (not while playing online)
+        Button hintButton = new Button("Hints");
+        hintButton.setFont(new Font("Courier New", 16));
+        hintButton.setOnAction(e -> {
+            toggleHints();
+            hintButton.setText(hints != null ? "Hide Hints" : "Hints");
+        });
+        if (online != null || !HintAnalyzer.supports(board.getRows(), board.getCols())) {
+            hintButton.setDisable(true);
+        }
+        
+        // Create mute button (sound effects and music)
+        Button muteButton = new Button(SoundManager.isMuted() ? "Unmute" : "Mute");
+        muteButton.setFont(new Font("Courier New", 16));
+        muteButton.setOnAction(e -> {
+            boolean mute = !SoundManager.isMuted();
+            SoundManager.setMuted(mute);
+            muteButton.setText(mute ? "Unmute" : "Mute");
+        });
         
         // Button layout
         HBox buttonBox = new HBox(10);
         buttonBox.setAlignment(Pos.CENTER);
-        buttonBox.getChildren().addAll(restartButton, menuButton);
+        if (watched == null) {
+            buttonBox.getChildren().addAll(restartButton, undoButton, redoButton, saveButton, menuButton, muteButton, spectateButton, hintButton);
+        } else {
+            // Spectators cannot change the game; replays get speed buttons instead
+            buttonBox.getChildren().addAll(saveButton, menuButton, muteButton, hintButton);
+            if (replay != null && !replay.isLive()) {
+                for (String name : new String[]{"Slower", "Faster", "Fast Forward"}) {
+                    Button speedButton = new Button(name);
+                    speedButton.setFont(new Font("Courier New", 16));
+                    speedButton.setOnAction(e -> changeReplaySpeed(name));
+                    buttonBox.getChildren().add(speedButton);
+                }
+            }
+        }
         
         // Main layout
         VBox layout = new VBox(20);
         layout.setAlignment(Pos.CENTER);
-        layout.getChildren().addAll(statusLabel, columnNumbers, gridPane, buttonBox);
+        layout.getChildren().addAll(statusBox, hintRow, columnNumbers, view.getNode(), buttonBox);
         layout.setStyle("-fx-background-color: #87CEEB;");
         
         // Create scene
         Scene scene = new Scene(layout, 800, 700);
         
-        // Handle keyboard input (keys 1-7)
+        // Handle keyboard input (one key per column, see COLUMN_KEYS)
         scene.setOnKeyPressed(e -> {
-            if (gameOver) return;
+            if (gameOver || computerThinking) return;
             
-            String key = e.getText();
-            int col = -1;
+            String key = e.getText().toLowerCase();
             
             // Convert key press to column number
-            if (key.equals("1")) col = 0;
-            else if (key.equals("2")) col = 1;
-            else if (key.equals("3")) col = 2;
-            else if (key.equals("4")) col = 3;
-            else if (key.equals("5")) col = 4;
-            else if (key.equals("6")) col = 5;
-            else if (key.equals("7")) col = 6;
+            int col = key.length() == 1 ? COLUMN_KEYS.indexOf(key.charAt(0)) : -1;
             
-            if (col != -1) {
-                handleMove(col);
+            if (col != -1 && col < board.getCols()) {
+                playerMove(col);
             }
         });
         
         stage.setScene(scene);
-    }
-    
-    // Draw the game board
-    private void drawBoard() {
-        gridPane.getChildren().clear();
-        
-        for (int row = 0; row < board.getRows(); row++) {
-            for (int col = 0; col < board.getCols(); col++) {
-                int cellValue = board.getCell(row, col);
-                
-                // Check if this position is a winning position
-                boolean isWinning = false;
-                if (winningPositions != null) {
-                    for (int[] pos : winningPositions) {
-                        if (pos[0] == row && pos[1] == col) {
-                            isWinning = true;
-                            break;
-                        }
-                    }
-                }
-                
-                // Create circle for coin
-                Circle circle = new Circle(40);
-                circle.setStroke(Color.BLACK);
-                circle.setStrokeWidth(2);
-                
-                if (cellValue == 0) {
-                    circle.setFill(Color.WHITE);
-                } else if (cellValue == 1) {
-                    circle.setFill(Color.RED);
+        if (frameCounter != null) {
+            frameCounter.start();
+        }
+        
+        if (online != null) {
+            statusLabel.setText("Waiting for an opponent...");
+            online.connect(board.getRows(), board.getCols(), board.getConnect());
+        }
+        
+        if (watched != null) {
+            statusLabel.setText("Watching...");
+            watched.subscribe(new Spectator());
+            if (replay != null) {
+                replay.start();
+            }
+        } else {
+            feed = new MatchFeed();
+            if (online == null) {
+                if (logId == 0) {
+                    startLogged();
                 } else {
-                    circle.setFill(Color.YELLOW);
+                    continueResumed();
                 }
-                
-                // If this is a winning coin, add a star on top
-                if (isWinning) {
-                    StackPane stackPane = new StackPane();
-                    
-                    // Create a star shape
-                    Polygon star = new Polygon();
-                    star.getPoints().addAll(
-                        0.0, -15.0,
-                        4.0, -5.0,
-                        15.0, -5.0,
-                        6.0, 2.0,
-                        10.0, 12.0,
-                        0.0, 6.0,
-                        -10.0, 12.0,
-                        -6.0, 2.0,
-                        -15.0, -5.0,
-                        -4.0, -5.0
-                    );
-                    star.setFill(Color.GOLD);
-                    star.setStroke(Color.ORANGE);
-                    star.setStrokeWidth(1.5);
-                    
-                    stackPane.getChildren().addAll(circle, star);
-                    gridPane.add(stackPane, col, row);
-                } else {
-                    gridPane.add(circle, col, row);
+            }
+            publishPosition();
+            refreshHints();
+            if (FEED_PORT > 0) {
+                try {
+                    feedServer = new FeedServer(feed, FEED_PORT);
+                } catch (IOException e) {
+                    statusLabel.setText("Could not open the spectator feed: " + e.getMessage());
                 }
             }
         }
     }
     
+    // A move by the person at this screen; online it only counts once the server echoes it
+    private void playerMove(int col) {
+        if (online == null) {
+            handleMove(col);
+        } else if (currentPlayer == localPlayer) {
+            online.sendMove(col);
+        }
+    }
+    
     // Handle a move
     private void handleMove(int col) {
         // Try to drop coin
@@ -190,24 +446,41 @@ public class GameScreen {
             statusLabel.setText("Column is full! Try another column.");
             return;
         }
+        logMove(col);
         
+        afterMove(row, col, true);
+    }
+    
+    // Show a move that is already on the board and see whether the game goes on
+    private void afterMove(int row, int col, boolean letComputerMove) {
         // Play coin drop sound effect
         if (currentPlayer == 1) {
-            playSoundEffect("src/main/resources/red_coin.mp3");
+            SoundManager.play(SoundManager.Effect.RED_COIN);
         } else {
-            playSoundEffect("src/main/resources/yellow_coin.mp3");
+            SoundManager.play(SoundManager.Effect.YELLOW_COIN);
         }
         
         // Update the visual board
-        drawBoard();
+        long drawStart = System.nanoTime();
+        view.updateCell(row, col, true);
+        EngineMetrics.recordUiUpdate(System.nanoTime() - drawStart);
+        publishPosition();
+        refreshHints();
         
         // Check for win
         if (board.checkWin(currentPlayer)) {
             gameOver = true;
-            winningPositions = board.getWinningPositions(currentPlayer);
-            drawBoard(); // Redraw to show stars
-            statusLabel.setText("Player " + currentPlayer + " Wins!");
-            playSoundEffect("src/main/resources/win.mp3");
+            view.showWin(board.getWinningPositions(currentPlayer));
+            if (computer != null && currentPlayer == 2) {
+                statusLabel.setText("Computer Wins!");
+            } else if (online != null) {
+                statusLabel.setText(currentPlayer == localPlayer ? "You Win!" : "Your Opponent Wins!");
+            } else {
+                statusLabel.setText("Player " + currentPlayer + " Wins!");
+            }
+            SoundManager.play(SoundManager.Effect.WIN);
+            endLogged(currentPlayer);
+            EngineMetrics.dumpGame(gameMetrics, "player" + currentPlayer, board.getMoveCount());
             return;
         }
         
@@ -215,49 +488,411 @@ public class GameScreen {
         if (board.isFull()) {
             gameOver = true;
             statusLabel.setText("It's a Tie!");
+            endLogged(GameRecord.DRAW);
+            EngineMetrics.dumpGame(gameMetrics, "draw", board.getMoveCount());
             return;
         }
         
         // Switch player
         currentPlayer = (currentPlayer == 1) ? 2 : 1;
         String color = (currentPlayer == 1) ? "Red" : "Yellow";
-        statusLabel.setText("Player " + currentPlayer + "'s Turn (" + color + ") - Press 1-7");
+        statusLabel.setText("Player " + currentPlayer + "'s Turn (" + color + ") - " + moveHint());
+        if (online != null && currentPlayer != localPlayer) {
+            statusLabel.setText("Waiting for your opponent...");
+        }
+        
+        // Let the computer answer
+        if (computer != null && currentPlayer == 2 && letComputerMove) {
+            requestComputerMove();
+        }
+    }
+    
+    // Ask the computer for a move; it is played through handleMove when ready
+    private void requestComputerMove() {
+        computerThinking = true;
+        thinkingIndicator.setVisible(true);
+        statusLabel.setText("Computer is thinking...");
+        int requestedFor = gameId;
+        long[] lastUpdate = {0};
+        pendingMove = computer.requestMove(board, currentPlayer, result -> {
+            // At most one status update every 50 ms, early depths finish much faster than that
+            long now = System.nanoTime();
+            if (now - lastUpdate[0] < 50_000_000L && !result.isExact()) {
+                return;
+            }
+            lastUpdate[0] = now;
+            Platform.runLater(() -> {
+                if (requestedFor == gameId && computerThinking) {
+                    statusLabel.setText("Computer is thinking... depth " + result.getDepth()
+                            + ", best column " + (result.getColumn() + 1));
+                }
+            });
+        });
+        pendingMove.whenCompleteAsync((col, error) -> {
+            if (requestedFor != gameId || gameOver) {
+                return; // Game was restarted, undone or left while searching
+            }
+            pendingMove = null;
+            computerThinking = false;
+            thinkingIndicator.setVisible(false);
+            if (error != null) {
+                statusLabel.setText("The computer could not move: " + error.getMessage());
+                return;
+            }
+            handleMove(col);
+        }, Platform::runLater);
+    }
+    
+    // Stop the computer's search and ignore whatever it was about to play
+    private void cancelComputerMove() {
+        gameId++;
+        if (pendingMove != null) {
+            pendingMove.cancel(false);
+            pendingMove = null;
+        }
+        computerThinking = false;
+        if (thinkingIndicator != null) {
+            thinkingIndicator.setVisible(false);
+        }
+    }
+    
+    // Take back the last move; against the computer, back to the last move of the player
+    private void undoMove() {
+        if (online != null || !board.canUndo()) {
+            return;
+        }
+        cancelComputerMove();
+        view.hideWin();
+        
+        MatchLog log = getMatchLog();
+        do {
+            int col = board.undo();
+            view.updateCell(board.getRows() - 1 - board.getHeight(col), col, false);
+            if (logId != 0) {
+                log.undo(logId);
+            }
+        } while (computer != null && board.canUndo() && board.getMoveCount() % 2 == 1);
+        if (gameOver) {
+            startLogged(); // The finished game left the log, this one goes on from here
+        } else if (logId != 0) {
+            log.commitLater();
+        }
+        
+        gameOver = false;
+        currentPlayer = board.getMoveCount() % 2 + 1;
+        String color = (currentPlayer == 1) ? "Red" : "Yellow";
+        statusLabel.setText("Player " + currentPlayer + "'s Turn (" + color + ") - " + moveHint());
+        publishPosition();
+        refreshHints();
+    }
+    
+    // Play undone moves again; against the computer, up to the player's next turn
+    private void redoMove() {
+        if (online != null || computerThinking || !board.canRedo()) {
+            return;
+        }
+        do {
+            int col = board.redo();
+            logMove(col);
+            afterMove(board.getRows() - board.getHeight(col), col, !board.canRedo());
+        } while (computer != null && !gameOver && currentPlayer == 2 && board.canRedo());
+    }
+    
+    // Append the game so far to the game archive
+    private void saveGame() {
+        try (GameArchive.Writer writer = GameArchive.appendWriter(Paths.get(ARCHIVE_FILE),
+                board.getRows(), board.getCols(), board.getConnect())) {
+            writer.write(GameRecord.of(board));
+            statusLabel.setText("Game saved to " + ARCHIVE_FILE);
+        } catch (IOException e) {
+            statusLabel.setText("Could not save the game: " + e.getMessage());
+        }
     }
     
     // Restart the game
     private void restartGame() {
+        cancelComputerMove();
+        endLogged(GameRecord.UNFINISHED);
         board.reset();
         currentPlayer = 1;
         gameOver = false;
-        winningPositions = null;
-        statusLabel.setText("Player 1's Turn (Red) - Press 1-7");
-        drawBoard();
-    }
-    
-    // Play background music
-    private void playBackgroundMusic() {
-        try {
-            File musicFile = new File("src/main/resources/bg_music.mp3");
-            Media music = new Media(musicFile.toURI().toString());
-            bgMusicPlayer = new MediaPlayer(music);
-            bgMusicPlayer.setCycleCount(MediaPlayer.INDEFINITE); // Loop forever
-            bgMusicPlayer.setVolume(0.1); // Set volume to 10%
-            bgMusicPlayer.play();
-        } catch (Exception e) {
-            System.out.println("Background music not found or error playing: " + e.getMessage());
-        }
-    }
-    
-    // Play sound effect
-    private void playSoundEffect(String filePath) {
-        try {
-            File soundFile = new File(filePath);
-            Media sound = new Media(soundFile.toURI().toString());
-            sfxPlayer = new MediaPlayer(sound);
-            sfxPlayer.setVolume(0.5); // Set volume to 50%
-            sfxPlayer.play();
-        } catch (Exception e) {
-            System.out.println("Sound effect not found: " + filePath);
+        gameMetrics = EngineMetrics.snapshot();
+        statusLabel.setText("Player 1's Turn (Red) - " + moveHint());
+        view.hideWin();
+        view.redraw();
+        publishPosition();
+        refreshHints();
+        if (online == null) {
+            startLogged();
+        }
+        
+        // Online, a restart means leaving this match and waiting for a new opponent
+        if (online != null) {
+            gameOver = true;
+            localPlayer = 0;
+            statusLabel.setText("Waiting for an opponent...");
+            online.leave();
+            online.join(board.getRows(), board.getCols(), board.getConnect());
+        }
+    }
+    
+    // Log the game from the position on the board on; the fsync runs in the background
+    private void startLogged() {
+        MatchLog log = getMatchLog();
+        if (log == null || watched != null) {
+            return;
+        }
+        logId = log.startMatch(board.getRows(), board.getCols(), board.getConnect(),
+                computer != null ? MatchLog.LOCAL_VS_COMPUTER : MatchLog.LOCAL_TWO_PLAYER);
+        for (int i = 0; i < board.getMoveCount(); i++) {
+            log.move(logId, board.getMove(i));
+        }
+        log.commitLater();
+    }
+    
+    private void logMove(int col) {
+        if (logId != 0) {
+            MatchLog log = getMatchLog();
+            log.move(logId, col);
+            log.commitLater();
+        }
+    }
+    
+    private void endLogged(int result) {
+        if (logId != 0) {
+            MatchLog log = getMatchLog();
+            log.endMatch(logId, result);
+            log.commitLater();
+            logId = 0;
+        }
+    }
+    
+    // Show a game from the match log and let whoever is to move go on
+    private void continueResumed() {
+        view.redraw();
+        int last = 3 - currentPlayer;
+        if (board.checkWin(last) || board.isFull()) {
+            // The crash came before the end of the game was logged
+            gameOver = true;
+            statusLabel.setText(board.isFull() && !board.checkWin(last) ? "It's a Tie!" : "Player " + last + " Wins!");
+            endLogged(board.checkWin(last) ? last : GameRecord.DRAW);
+            return;
+        }
+        String color = (currentPlayer == 1) ? "Red" : "Yellow";
+        statusLabel.setText("Resumed - Player " + currentPlayer + "'s Turn (" + color + ") - " + moveHint());
+        if (computer != null && currentPlayer == 2) {
+            requestComputerMove();
+        }
+    }
+    
+    // Tell spectators about the position; publishing never waits for them
+    private void publishPosition() {
+        if (feed != null) {
+            feed.publish(board);
+        }
+    }
+    
+    private void toggleHints() {
+        if (hints == null) {
+            hints = new HintAnalyzer(board.getRows(), board.getCols(), board.getConnect(), Platform::runLater, this::showHints);
+        } else {
+            hints.close();
+            hints = null;
+        }
+        hintRow.setVisible(hints != null);
+        hintRow.setManaged(hints != null);
+        refreshHints();
+    }
+    
+    // Analyze the new position for the hint row; nothing to show once the game is over
+    // or while the computer is to move
+    private void refreshHints() {
+        if (hints == null) {
+            return;
+        }
+        boolean over = board.checkWin(1) || board.checkWin(2) || board.isFull();
+        if (over || (computer != null && board.getMoveCount() % 2 == 1)) {
+            hints.cancel();
+            showHints(new HintAnalyzer.Hint[board.getCols()]);
+        } else {
+            hints.analyze(board);
+        }
+    }
+    
+    // Green for wins, red for losses, grey for draws; the tooltip says it in words
+    private void showHints(HintAnalyzer.Hint[] columnHints) {
+        for (int col = 0; col < columnHints.length; col++) {
+            Label label = (Label) hintRow.getChildren().get(col);
+            HintAnalyzer.Hint hint = columnHints[col];
+            if (hint == null) {
+                label.setText("");
+                label.setTooltip(null);
+                continue;
+            }
+            String color;
+            if (hint.getOutcome() == HintAnalyzer.Hint.WIN) {
+                color = "#1b7f2a";
+            } else if (hint.getOutcome() == HintAnalyzer.Hint.LOSS) {
+                color = "#c0392b";
+            } else if (hint.getOutcome() == HintAnalyzer.Hint.DRAW) {
+                color = "#555555";
+            } else {
+                color = "#000000";
+            }
+            label.setText(hint.getLabel());
+            label.setStyle("-fx-font-weight: bold; -fx-text-fill: " + color + ";");
+            if (label.getTooltip() == null) {
+                label.setTooltip(new Tooltip());
+            }
+            label.getTooltip().setText(hint.getDescription());
+        }
+    }
+    
+    private void closeFeed() {
+        if (feedServer != null) {
+            try {
+                feedServer.close();
+            } catch (IOException e) {
+                // Not listening any more either way
+            }
         }
+        if (feed != null) {
+            feed.close();
+        }
+    }
+    
+    private void stopWatching() {
+        if (watching != null) {
+            watching.cancel();
+        }
+        if (replay != null) {
+            try {
+                replay.close();
+            } catch (IOException e) {
+                // Nothing left to read either way
+            }
+        }
+    }
+    
+    // Slower and Faster halve or double the replay speed, Fast Forward switches waiting off and on
+    private void changeReplaySpeed(String button) {
+        double speed = replay.getMovesPerSecond();
+        if (button.equals("Fast Forward")) {
+            if (speed > 0) {
+                resumeSpeed = speed;
+                speed = 0;
+            } else {
+                speed = resumeSpeed > 0 ? resumeSpeed : 2;
+            }
+        } else if (speed > 0) {
+            speed = button.equals("Faster") ? Math.min(64, speed * 2) : Math.max(0.25, speed / 2);
+        }
+        replay.setMovesPerSecond(speed);
+        showFrame();
+    }
+    
+    // Show the newest frame of the watched game. Frames are drawn on the JavaFX thread
+    // in the order they arrive; when several arrive between two pulses only the newest
+    // is drawn, so a fast-forwarded game jumps straight to its final board.
+    private void showFrame() {
+        MatchFeed.Frame frame = pendingFrame.getAndSet(null);
+        if (frame != null && frame.getSequence() > shownSequence) {
+            shownSequence = frame.getSequence();
+            if (frame.getRows() != board.getRows() || frame.getCols() != board.getCols()
+                    || frame.getConnect() != board.getConnect()) {
+                statusLabel.setText("The game moved to a " + frame.getRows() + " x " + frame.getCols() + " board");
+                return;
+            }
+            int added = frame.movesAfter(board);
+            if (added < 0) {
+                board.reset();
+                view.hideWin();
+                view.redraw();
+                added = frame.getMoveCount();
+            }
+            long drawStart = System.nanoTime();
+            for (int i = frame.getMoveCount() - added; i < frame.getMoveCount(); i++) {
+                int col = frame.getMove(i);
+                view.updateCell(board.dropCoin(col, i % 2 + 1), col, added == 1);
+            }
+            EngineMetrics.recordUiUpdate(System.nanoTime() - drawStart);
+            refreshHints();
+            if (added > 0) {
+                SoundManager.play(frame.getMoveCount() % 2 == 1 ? SoundManager.Effect.RED_COIN : SoundManager.Effect.YELLOW_COIN);
+            }
+        }
+        
+        int result = GameRecord.of(board).getResult();
+        String status;
+        if (result == 1 || result == 2) {
+            view.showWin(board.getWinningPositions(result));
+            status = "Player " + result + " Wins!";
+        } else if (result == GameRecord.DRAW) {
+            status = "It's a Tie!";
+        } else {
+            status = "Player " + (board.getMoveCount() % 2 + 1) + "'s Turn (" + (board.getMoveCount() % 2 == 0 ? "Red" : "Yellow") + ")";
+        }
+        if (feedEnded) {
+            status += " - feed ended";
+        } else if (replay != null && !replay.isLive()) {
+            double speed = replay.getMovesPerSecond();
+            status += speed > 0 ? String.format(" - replay at %.4g moves/s", speed) : " - fast forward";
+        } else {
+            status += " - watching live";
+        }
+        statusLabel.setText(status);
+    }
+    
+    // Receives the watched game on a feed thread and hands frames to the JavaFX thread
+    private class Spectator implements Flow.Subscriber<MatchFeed.Frame> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            watching = subscription;
+            subscription.request(Long.MAX_VALUE);
+            MatchFeed.Frame latest = watched.getLatest();
+            if (latest != null) {
+                onNext(latest);
+            }
+        }
+        
+        @Override
+        public void onNext(MatchFeed.Frame frame) {
+            // Keep the newest frame; only the first one waiting asks for a redraw
+            MatchFeed.Frame waiting;
+            do {
+                waiting = pendingFrame.get();
+                if (waiting != null && waiting.getSequence() >= frame.getSequence()) {
+                    return;
+                }
+            } while (!pendingFrame.compareAndSet(waiting, frame));
+            if (waiting == null) {
+                Platform.runLater(GameScreen.this::showFrame);
+            }
+        }
+        
+        @Override
+        public void onError(Throwable error) {
+            Platform.runLater(() -> statusLabel.setText("The feed failed: " + error.getMessage()));
+        }
+        
+        @Override
+        public void onComplete() {
+            Platform.runLater(() -> {
+                feedEnded = true;
+                showFrame();
+            });
+        }
+    }
+    
+    // How to play a move on this board, e.g. "Press 1-7"
+    private String moveHint() {
+        return moveHint(board.getCols());
+    }
+    
+    // How to play a column on a board this wide, e.g. "Press 1-7"
+    public static String moveHint(int cols) {
+        int keys = Math.min(cols, COLUMN_KEYS.length());
+        String hint = "Press 1-" + COLUMN_KEYS.charAt(keys - 1);
+        return cols > keys ? hint + " or click" : hint;
     }
 }
\ No newline at end of file
@@ -0,0 +1,543 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GameServer {
+
+    // Headless server hosting many matches at once (see Protocol for the messages).
+    // Connections are spread over a few event loops, each a single thread with its
+    // own Selector. Both players of a match always live on the same loop, so match
+    // state is only ever touched by one thread and needs no locking. Players waiting
+    // for an opponent sit in one concurrent map; when two players on different loops
+    // are paired, the newcomer is handed over to the loop of the player who waited.
+    // With a MatchLog every move is made durable before the MOVED replies go out: a
+    // loop commits the log once per round, just before it flushes its replies, so all
+    // moves of a round (and of other loops committing at the same time) share one fsync.
+
+    // Per-connection buffers; a client that lets more than OUT_CAPACITY bytes pile up is dropped
+    private static final int IN_CAPACITY = 64;
+    private static final int OUT_CAPACITY = 256;
+
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private Thread acceptThread;
+    private volatile boolean running;
+    private volatile MatchLog log; // null without --log, or once it failed
+
+    // Players waiting for an opponent, keyed by board size (see boardKey)
+    private ConcurrentHashMap<Integer, Connection> waiting = new ConcurrentHashMap<>();
+
+    private LongAdder connections = new LongAdder();
+    private LongAdder matchesStarted = new LongAdder();
+    private LongAdder matchesFinished = new LongAdder();
+    private LongAdder moves = new LongAdder();
+
+    public GameServer(int port, int loopCount) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(i);
+        }
+    }
+
+    // Usage: GameServer [--port P] [--loops N] [--log DIR]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = Protocol.DEFAULT_PORT;
+        int loopCount = Runtime.getRuntime().availableProcessors();
+        String logDir = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[i + 1]); break;
+                case "--loops": loopCount = Integer.parseInt(args[i + 1]); break;
+                case "--log": logDir = args[i + 1]; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        GameServer server = new GameServer(port, loopCount);
+        if (logDir != null) {
+            MatchLog log = MatchLog.open(Paths.get(logDir));
+            server.setMatchLog(log);
+        }
+        server.start();
+        System.out.println("Connect 4 server listening on port " + server.getPort() + " with " + loopCount + " event loops");
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.printf("%d connections, %d matches started, %d finished, %d moves%n",
+                    server.getConnections(), server.getMatchesStarted(), server.getMatchesFinished(), server.getMoves());
+        }
+    }
+
+    // Log matches from now on. Matches of an earlier run found in the log lost their
+    // players with that run, so they are closed as abandoned.
+    public void setMatchLog(MatchLog log) throws IOException {
+        int abandoned = 0;
+        for (MatchLog.Match match : log.getLiveMatches()) {
+            if (match.getKind() == MatchLog.SERVER) {
+                log.endMatch(match.getId(), Protocol.OPPONENT_LEFT);
+                abandoned++;
+            }
+        }
+        log.commit();
+        System.out.printf(Locale.ROOT, "Match log recovered in %.1f ms, %d unfinished matches abandoned%n",
+                log.getRecoveryNanos() / 1e6, abandoned);
+        this.log = log;
+    }
+
+    public void start() {
+        running = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+        acceptThread = new Thread(this::acceptLoop, "connect4-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public void stop() throws IOException {
+        running = false;
+        serverChannel.close();
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // Hand new connections to the event loops in turn
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.increment();
+                EventLoop loop = loops[next];
+                next = (next + 1) % loops.length;
+                loop.execute(() -> loop.register(new Connection(channel, loop)));
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static int boardKey(int rows, int cols, int connect) {
+        return (rows << 16) | (cols << 8) | connect;
+    }
+
+    // One client. Only its current loop's thread reads or writes these fields.
+    private static class Connection {
+        SocketChannel channel;
+        EventLoop loop;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(IN_CAPACITY);
+        ByteBuffer out = ByteBuffer.allocate(OUT_CAPACITY);
+        boolean dirty; // out has data and is queued for flushing
+        boolean closed;
+        Match match;
+        int player; // 1 or 2 inside a match
+        int waitingFor = -1; // board key while waiting for an opponent
+
+        Connection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+        }
+    }
+
+    // One game between two connections on the same loop
+    private static class Match {
+        Board board;
+        Connection[] players = new Connection[3];
+        int turn = 1;
+        long logId; // id in the match log
+
+        Match(int rows, int cols, int connect, Connection red, Connection yellow) {
+            board = new Board(rows, cols, connect);
+            players[1] = red;
+            players[2] = yellow;
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        Selector selector;
+        Thread thread;
+        ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // work posted by other threads
+        List<Connection> dirty = new ArrayList<>(); // connections with output to flush
+        boolean logged; // appended to the match log this round
+
+        EventLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "connect4-loop-" + index);
+            thread.setDaemon(true);
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    System.out.println("Select failed: " + e.getMessage());
+                    return;
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Connection conn = (Connection) key.attachment();
+                    if (!key.isValid() || conn.loop != this) {
+                        continue;
+                    }
+                    if (key.isWritable()) {
+                        flush(conn);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        read(conn);
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                // Replies are batched: one write per connection per round, after the moves are durable
+                if (logged) {
+                    logged = false;
+                    commitLog();
+                }
+                for (int i = 0; i < dirty.size(); i++) {
+                    flush(dirty.get(i));
+                }
+                dirty.clear();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Shutting down anyway
+            }
+        }
+
+        void commitLog() {
+            MatchLog current = log;
+            if (current == null) {
+                return;
+            }
+            try {
+                current.commit();
+            } catch (IOException e) {
+                // Keep playing, but nothing is persisted any more
+                if (log == current) {
+                    log = null;
+                    System.out.println("Match log failed, matches are not persisted any more: " + e.getMessage());
+                }
+            }
+        }
+
+        void register(Connection conn) {
+            try {
+                int ops = SelectionKey.OP_READ | (conn.out.position() > 0 ? SelectionKey.OP_WRITE : 0);
+                conn.key = conn.channel.register(selector, ops, conn);
+            } catch (ClosedChannelException e) {
+                close(conn);
+            }
+        }
+
+        void read(Connection conn) {
+            int count;
+            try {
+                count = conn.channel.read(conn.in);
+            } catch (IOException e) {
+                count = -1;
+            }
+            if (count < 0) {
+                close(conn);
+                return;
+            }
+            process(conn);
+        }
+
+        // Handle every complete message in the input buffer
+        void process(Connection conn) {
+            ByteBuffer in = conn.in;
+            in.flip();
+            while (in.hasRemaining() && !conn.closed && conn.loop == this) {
+                byte type = in.get(in.position());
+                int size = Protocol.messageSize(type);
+                if (size < 0 || type >= Protocol.MATCHED) {
+                    send(conn, Protocol.ERROR, Protocol.BAD_MESSAGE);
+                    flush(conn); // Before close, or the error never leaves
+                    close(conn);
+                    return;
+                }
+                if (in.remaining() < size) {
+                    break;
+                }
+                in.get();
+                switch (type) {
+                    case Protocol.JOIN:
+                        join(conn, in.get() & 0xFF, in.get() & 0xFF, in.get() & 0xFF);
+                        break;
+                    case Protocol.MOVE:
+                        move(conn, in.get() & 0xFF);
+                        break;
+                    default:
+                        leave(conn);
+                        break;
+                }
+            }
+            in.compact();
+            if (conn.loop != this && !conn.closed) {
+                handOver(conn);
+            }
+        }
+
+        // Pass a connection paired with a player on another loop over to that loop
+        void handOver(Connection conn) {
+            conn.key.cancel();
+            if (conn.dirty) {
+                dirty.remove(conn); // Its output is flushed by the new loop
+                conn.dirty = false;
+            }
+            EventLoop target = conn.loop;
+            Match match = conn.match;
+            target.execute(() -> {
+                target.register(conn);
+                target.startMatch(match);
+                // The newcomer may already have sent more than its JOIN; unless startMatch
+                // handed it on once more, then the next loop processes it
+                if (conn.loop == target && conn.in.position() > 0) {
+                    target.process(conn);
+                }
+            });
+        }
+
+        void join(Connection conn, int rows, int cols, int connect) {
+            if (conn.match != null || conn.waitingFor >= 0) {
+                send(conn, Protocol.ERROR, Protocol.ALREADY_PLAYING);
+                return;
+            }
+            if (!Protocol.isValidBoard(rows, cols, connect)) {
+                send(conn, Protocol.ERROR, Protocol.BAD_BOARD);
+                return;
+            }
+            int boardKey = boardKey(rows, cols, connect);
+            while (true) {
+                Connection opponent = waiting.remove(boardKey);
+                if (opponent == null) {
+                    conn.waitingFor = boardKey;
+                    if (waiting.putIfAbsent(boardKey, conn) == null) {
+                        return;
+                    }
+                    conn.waitingFor = -1; // Someone else just started waiting, pair with them
+                    continue;
+                }
+
+                // The player who waited moves first; the match runs on their loop
+                Match match = new Match(rows, cols, connect, opponent, conn);
+                EventLoop target = opponent.loop;
+                if (target == this) {
+                    startMatch(match);
+                } else {
+                    // Moved by the caller once it is done with the connection, see handOver
+                    conn.loop = target;
+                    conn.match = match;
+                }
+                return;
+            }
+        }
+
+        void startMatch(Match match) {
+            Connection red = match.players[1];
+            Connection yellow = match.players[2];
+            red.waitingFor = -1;
+            if (red.closed || yellow.closed) {
+                yellow.match = null;
+                // One side disconnected while being paired: the other one waits again
+                Connection alive = red.closed ? yellow : red;
+                if (!alive.closed) {
+                    join(alive, match.board.getRows(), match.board.getCols(), match.board.getConnect());
+                    if (alive.loop != this) {
+                        handOver(alive); // Paired with a player on another loop
+                    }
+                }
+                return;
+            }
+
+            matchesStarted.increment();
+            MatchLog current = log;
+            if (current != null) {
+                match.logId = current.startMatch(match.board.getRows(), match.board.getCols(), match.board.getConnect(),
+                        MatchLog.SERVER);
+                logged = true;
+            }
+            for (int player = 1; player <= 2; player++) {
+                Connection conn = match.players[player];
+                conn.match = match;
+                conn.player = player;
+                send(conn, Protocol.MATCHED, player, match.board.getRows(), match.board.getCols(), match.board.getConnect());
+            }
+        }
+
+        void move(Connection conn, int col) {
+            Match match = conn.match;
+            if (match == null) {
+                send(conn, Protocol.ERROR, Protocol.NOT_IN_MATCH);
+                return;
+            }
+            if (match.turn != conn.player) {
+                send(conn, Protocol.ERROR, Protocol.NOT_YOUR_TURN);
+                return;
+            }
+            Board board = match.board;
+            if (board.dropCoin(col, conn.player) < 0) {
+                send(conn, Protocol.ERROR, Protocol.ILLEGAL_MOVE);
+                return;
+            }
+            moves.increment();
+            MatchLog current = log;
+            if (current != null) {
+                current.move(match.logId, col);
+                logged = true;
+            }
+            send(match.players[1], Protocol.MOVED, conn.player, col);
+            send(match.players[2], Protocol.MOVED, conn.player, col);
+
+            if (board.checkWin(conn.player)) {
+                endMatch(match, conn.player);
+            } else if (board.isFull()) {
+                endMatch(match, Protocol.DRAW);
+            } else {
+                match.turn = 3 - conn.player;
+            }
+        }
+
+        void leave(Connection conn) {
+            if (conn.waitingFor >= 0) {
+                waiting.remove(conn.waitingFor, conn);
+                conn.waitingFor = -1;
+            }
+            Match match = conn.match;
+            if (match != null) {
+                Connection opponent = match.players[3 - conn.player];
+                conn.match = null;
+                opponent.match = null;
+                matchesFinished.increment();
+                endLogged(match, Protocol.OPPONENT_LEFT);
+                send(opponent, Protocol.GAME_OVER, Protocol.OPPONENT_LEFT);
+            }
+        }
+
+        void endMatch(Match match, int result) {
+            matchesFinished.increment();
+            endLogged(match, result);
+            for (int player = 1; player <= 2; player++) {
+                match.players[player].match = null;
+                send(match.players[player], Protocol.GAME_OVER, result);
+            }
+        }
+
+        void endLogged(Match match, int result) {
+            MatchLog current = log;
+            if (current != null) {
+                current.endMatch(match.logId, result);
+                logged = true;
+            }
+        }
+
+        // Queue a message; it goes out with the next flush of this loop
+        void send(Connection conn, byte type, int... values) {
+            if (conn.closed) {
+                return;
+            }
+            if (conn.out.remaining() < 1 + values.length) {
+                close(conn); // Client is not reading its messages
+                return;
+            }
+            conn.out.put(type);
+            for (int value : values) {
+                conn.out.put((byte) value);
+            }
+            if (!conn.dirty) {
+                conn.dirty = true;
+                dirty.add(conn);
+            }
+        }
+
+        void flush(Connection conn) {
+            conn.dirty = false;
+            if (conn.closed || !conn.key.isValid()) {
+                return;
+            }
+            ByteBuffer out = conn.out;
+            out.flip();
+            try {
+                conn.channel.write(out);
+            } catch (IOException e) {
+                out.clear();
+                close(conn);
+                return;
+            }
+            out.compact();
+            // Wait for the socket to drain when the kernel buffer is full
+            int ops = SelectionKey.OP_READ | (out.position() > 0 ? SelectionKey.OP_WRITE : 0);
+            if (conn.key.interestOps() != ops) {
+                conn.key.interestOps(ops);
+            }
+        }
+
+        void close(Connection conn) {
+            if (conn.closed) {
+                return;
+            }
+            conn.closed = true;
+            leave(conn);
+            connections.decrement();
+            try {
+                conn.channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    public long getMatchesStarted() {
+        return matchesStarted.sum();
+    }
+
+    public long getMatchesFinished() {
+        return matchesFinished.sum();
+    }
+
+    public long getMoves() {
+        return moves.sum();
+    }
+}
@@ -0,0 +1,600 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class GameStore {
+
+    // Games from GameArchive files, stored by column for aggregate queries. A store is a
+    // directory of segment files of up to SEGMENT_GAMES games each, possibly for
+    // different board sizes. A segment holds a 32 byte header (magic, version, rows,
+    // cols, connect, games as ints, moves as a long), then four columns, each starting
+    // on an 8 byte boundary, little endian:
+    //   results  byte per game (see GameRecord)
+    //   lengths  short per game, the number of moves
+    //   offsets  int per game plus one, where each game starts in moves
+    //   moves    byte per move, the column played
+    // Segments are memory-mapped read-only and queries cut them into chunks of
+    // CHUNK_GAMES games that a parallel stream scans into per-thread counters, so a
+    // query reads only the columns it needs and never copies them to the heap.
+    public static final int MAGIC = 0x43344353; // "C4CS"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    private static final int SEGMENT_GAMES = 1 << 22;
+    private static final int SEGMENT_MOVES = 1 << 30; // keeps every segment below the 2 GB mapping limit
+    private static final int CHUNK_GAMES = 1 << 16;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".c4s";
+
+    // losingPatterns() counts every ending in an array of cols^plies counters
+    private static final int MAX_PATTERNS = 1 << 22;
+
+    private final List<Segment> segments;
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private GameStore(List<Segment> segments) {
+        this.segments = segments;
+        for (Segment segment : segments) {
+            for (int from = 0; from < segment.games; from += CHUNK_GAMES) {
+                chunks.add(new Chunk(segment, from, Math.min(segment.games, from + CHUNK_GAMES)));
+            }
+        }
+    }
+
+    // Usage: GameStore ingest <store dir> <archive>...
+    //        GameStore <query> <store dir> [--size RxCxN] [--plies N] [--top N]
+    // ingest adds GameArchive files to a store (creating the directory). Queries:
+    // summary, openings (results by first column), lengths (average game length by
+    // result), losing (most common last --plies moves of lost games, default 4, top 10),
+    // advantage (first-player advantage by board size), columns (share of all moves by
+    // column). --size only looks at games on that board, e.g. --size 6x7x4.
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: GameStore ingest <store dir> <archive>...");
+            System.out.println("       GameStore summary|openings|lengths|losing|advantage|columns <store dir> [--size RxCxN] [--plies N] [--top N]");
+            return;
+        }
+        Path dir = Paths.get(args[1]);
+        if (args[0].equals("ingest")) {
+            long start = System.nanoTime();
+            long games = 0;
+            for (int i = 2; i < args.length; i++) {
+                games += ingest(Paths.get(args[i]), dir);
+            }
+            System.out.printf(Locale.ROOT, "Ingested %d games in %.2f s%n", games, (System.nanoTime() - start) / 1e9);
+            return;
+        }
+
+        int[] size = null;
+        int plies = 4;
+        int top = 10;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--size": size = Arrays.stream(value.split("x")).mapToInt(Integer::parseInt).toArray(); break;
+                case "--plies": plies = Integer.parseInt(value); break;
+                case "--top": top = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        GameStore store = open(dir);
+        if (size != null) {
+            store = store.select(size[0], size[1], size[2]);
+        }
+
+        long start = System.nanoTime();
+        switch (args[0]) {
+            case "summary":
+                store.printSummary();
+                break;
+            case "openings":
+                store.printOpenings();
+                break;
+            case "lengths":
+                store.printLengths();
+                break;
+            case "losing":
+                store.printLosingPatterns(plies, top);
+                break;
+            case "advantage":
+                store.printAdvantage();
+                break;
+            case "columns":
+                store.printColumns();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown query: " + args[0]);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "%d games, %d moves, %.1f ms (%.0f moves/s)%n",
+                store.getGameCount(), store.getMoveCount(), seconds * 1e3, store.getMoveCount() / seconds);
+    }
+
+    // Add the games of an archive to a store as new segments; returns how many there were
+    public static long ingest(Path archive, Path dir) throws IOException {
+        try (GameArchive.Reader reader = GameArchive.openReader(archive);
+             Writer writer = new Writer(dir, reader.getRows(), reader.getCols(), reader.getConnect())) {
+            GameRecord record = new GameRecord();
+            while (reader.read(record)) {
+                writer.add(record);
+            }
+            return writer.getCount();
+        }
+    }
+
+    // Map every segment in a directory
+    public static GameStore open(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        List<Segment> segments = new ArrayList<>();
+        for (Path file : files) {
+            segments.add(Segment.map(file));
+        }
+        return new GameStore(segments);
+    }
+
+    // The games on one board size only
+    public GameStore select(int rows, int cols, int connect) {
+        List<Segment> selected = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.rows == rows && segment.cols == cols && segment.connect == connect) {
+                selected.add(segment);
+            }
+        }
+        return new GameStore(selected);
+    }
+
+    public long getGameCount() {
+        long games = 0;
+        for (Segment segment : segments) {
+            games += segment.games;
+        }
+        return games;
+    }
+
+    public long getMoveCount() {
+        long moves = 0;
+        for (Segment segment : segments) {
+            moves += segment.moves;
+        }
+        return moves;
+    }
+
+    // Widest board in the store
+    private int getMaxCols() {
+        int cols = 1;
+        for (Segment segment : segments) {
+            cols = Math.max(cols, segment.cols);
+        }
+        return cols;
+    }
+
+    // Games by first column and result: counts[col * 4 + result]
+    public long[] openings() {
+        return scan(4 * getMaxCols(), (chunk, counts) -> {
+            Segment segment = chunk.segment;
+            for (int game = chunk.from; game < chunk.to; game++) {
+                if (segment.length(game) > 0) {
+                    counts[segment.move(segment.offset(game)) * 4 + segment.result(game)]++;
+                }
+            }
+        });
+    }
+
+    // {games, moves} by result: counts[result * 2] games, counts[result * 2 + 1] moves
+    public long[] lengths() {
+        return scan(8, (chunk, counts) -> {
+            Segment segment = chunk.segment;
+            for (int game = chunk.from; game < chunk.to; game++) {
+                int result = segment.result(game);
+                counts[result * 2]++;
+                counts[result * 2 + 1] += segment.length(game);
+            }
+        });
+    }
+
+    // How often every sequence of the last plies moves ended a won game, indexed by the
+    // moves as digits in base cols, oldest first; needs a single board size
+    public long[] losingPatterns(int plies) {
+        int cols = getMaxCols();
+        if (Math.pow(cols, plies) > MAX_PATTERNS) {
+            throw new IllegalArgumentException("Too many patterns of " + plies + " moves on " + cols + " columns");
+        }
+        int patterns = (int) Math.pow(cols, plies);
+        return scan(patterns, (chunk, counts) -> {
+            Segment segment = chunk.segment;
+            for (int game = chunk.from; game < chunk.to; game++) {
+                int result = segment.result(game);
+                int length = segment.length(game);
+                if ((result == 1 || result == 2) && length >= plies) {
+                    int end = segment.offset(game) + length;
+                    int key = 0;
+                    for (int i = end - plies; i < end; i++) {
+                        key = key * cols + segment.move(i);
+                    }
+                    counts[key]++;
+                }
+            }
+        });
+    }
+
+    // Games by board size and result: counts[size * 4 + result] for the sizes in getSizes() order
+    public long[] resultsBySize() {
+        List<String> sizes = getSizes();
+        return scan(4 * sizes.size(), (chunk, counts) -> {
+            Segment segment = chunk.segment;
+            int base = sizes.indexOf(segment.getSize()) * 4;
+            for (int game = chunk.from; game < chunk.to; game++) {
+                counts[base + segment.result(game)]++;
+            }
+        });
+    }
+
+    // Board sizes in the store, "RxCxN", in order of first appearance
+    public List<String> getSizes() {
+        List<String> sizes = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!sizes.contains(segment.getSize())) {
+                sizes.add(segment.getSize());
+            }
+        }
+        return sizes;
+    }
+
+    // Every move counted by column: counts[col]. Reads the whole moves column.
+    public long[] columns() {
+        return scan(getMaxCols(), (chunk, counts) -> {
+            Segment segment = chunk.segment;
+            int end = segment.offset(chunk.to);
+            for (int i = segment.offset(chunk.from); i < end; i++) {
+                counts[segment.move(i)]++;
+            }
+        });
+    }
+
+    // Run a scanner over all chunks in parallel and add up the counters
+    private long[] scan(int counters, ChunkScanner scanner) {
+        return chunks.parallelStream().collect(() -> new long[counters], (counts, chunk) -> scanner.scan(chunk, counts),
+                (counts, more) -> {
+                    for (int i = 0; i < counts.length; i++) {
+                        counts[i] += more[i];
+                    }
+                });
+    }
+
+    private interface ChunkScanner {
+        void scan(Chunk chunk, long[] counts);
+    }
+
+    private void printSummary() {
+        long[] counts = lengths();
+        System.out.printf("%d segments, board sizes %s%n", segments.size(), getSizes());
+        System.out.printf("Red wins %d, Yellow wins %d, draws %d, unfinished %d%n",
+                counts[2], counts[4], counts[GameRecord.DRAW * 2], counts[GameRecord.UNFINISHED * 2]);
+    }
+
+    private void printOpenings() {
+        long[] counts = openings();
+        System.out.printf("%6s %12s %8s %8s %8s%n", "first", "games", "red", "yellow", "draw");
+        for (int col = 0; col < counts.length / 4; col++) {
+            long games = counts[col * 4] + counts[col * 4 + 1] + counts[col * 4 + 2] + counts[col * 4 + 3];
+            if (games > 0) {
+                System.out.printf(Locale.ROOT, "%6d %12d %7.1f%% %7.1f%% %7.1f%%%n", col + 1, games,
+                        100.0 * counts[col * 4 + 1] / games, 100.0 * counts[col * 4 + 2] / games,
+                        100.0 * counts[col * 4 + GameRecord.DRAW] / games);
+            }
+        }
+    }
+
+    private void printLengths() {
+        long[] counts = lengths();
+        String[] names = {"unfinished", "red wins", "yellow wins", "draws"};
+        long games = 0;
+        long moves = 0;
+        for (int result = 0; result < 4; result++) {
+            games += counts[result * 2];
+            moves += counts[result * 2 + 1];
+            if (counts[result * 2] > 0) {
+                System.out.printf(Locale.ROOT, "%-12s %12d games, %6.2f moves%n", names[result], counts[result * 2],
+                        (double) counts[result * 2 + 1] / counts[result * 2]);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-12s %12d games, %6.2f moves%n", "all", games, games == 0 ? 0.0 : (double) moves / games);
+    }
+
+    private void printLosingPatterns(int plies, int top) {
+        if (getSizes().size() > 1) {
+            System.out.println("The store holds several board sizes, pick one with --size");
+            return;
+        }
+        int cols = getMaxCols();
+        long[] counts = losingPatterns(plies);
+        long total = Arrays.stream(counts).sum();
+        Integer[] order = new Integer[counts.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        System.out.printf("Last %d moves of %d won games, winning move last:%n", plies, total);
+        for (int i = 0; i < Math.min(top, order.length) && counts[order[i]] > 0; i++) {
+            StringBuilder moves = new StringBuilder();
+            for (int key = order[i], p = 0; p < plies; p++, key /= cols) {
+                moves.insert(0, " " + (key % cols + 1));
+            }
+            System.out.printf(Locale.ROOT, "%s  %10d  %5.2f%%%n", moves, counts[order[i]], 100.0 * counts[order[i]] / total);
+        }
+    }
+
+    private void printAdvantage() {
+        long[] counts = resultsBySize();
+        List<String> sizes = getSizes();
+        System.out.printf("%10s %12s %8s %8s %8s %8s%n", "board", "games", "red", "yellow", "draw", "elo");
+        for (int i = 0; i < sizes.size(); i++) {
+            long red = counts[i * 4 + 1];
+            long yellow = counts[i * 4 + 2];
+            long draws = counts[i * 4 + GameRecord.DRAW];
+            long games = red + yellow + draws;
+            if (games == 0) {
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%10s %12d %7.1f%% %7.1f%% %7.1f%% %+8.0f%n", sizes.get(i), games,
+                    100.0 * red / games, 100.0 * yellow / games, 100.0 * draws / games,
+                    EloRatings.eloDifference(EloRatings.score(red, draws, yellow)));
+        }
+    }
+
+    private void printColumns() {
+        long[] counts = columns();
+        long total = Arrays.stream(counts).sum();
+        for (int col = 0; col < counts.length; col++) {
+            System.out.printf(Locale.ROOT, "column %2d %14d %6.2f%%%n", col + 1, counts[col],
+                    total == 0 ? 0.0 : 100.0 * counts[col] / total);
+        }
+    }
+
+    // Games from..to of a segment, the unit of parallel work
+    private static class Chunk {
+        final Segment segment;
+        final int from;
+        final int to;
+
+        Chunk(Segment segment, int from, int to) {
+            this.segment = segment;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    // One mapped segment file
+    private static class Segment {
+        final int rows;
+        final int cols;
+        final int connect;
+        final int games;
+        final long moves;
+        final ByteBuffer results;
+        final ByteBuffer lengths;
+        final ByteBuffer offsets;
+        final ByteBuffer moveColumn;
+
+        private Segment(MappedByteBuffer map, int rows, int cols, int connect, int games, long moves) {
+            this.rows = rows;
+            this.cols = cols;
+            this.connect = connect;
+            this.games = games;
+            this.moves = moves;
+            long[] layout = layout(games, moves);
+            results = column(map, layout[0], games);
+            lengths = column(map, layout[1], 2L * games);
+            offsets = column(map, layout[2], 4L * (games + 1));
+            moveColumn = column(map, layout[3], moves);
+        }
+
+        static Segment map(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                    throw new IOException(file + " is not a game store segment");
+                }
+                int games = map.getInt(20);
+                long moves = map.getLong(24);
+                if (games < 0 || moves < 0 || layout(games, moves)[4] > map.limit()) {
+                    throw new IOException(file + " is truncated");
+                }
+                return new Segment(map, map.getInt(8), map.getInt(12), map.getInt(16), games, moves);
+            }
+        }
+
+        // Column starts {results, lengths, offsets, moves} and the file size
+        static long[] layout(int games, long moves) {
+            long results = HEADER_SIZE;
+            long lengths = align(results + games);
+            long offsets = align(lengths + 2L * games);
+            long moveColumn = align(offsets + 4L * (games + 1));
+            return new long[]{results, lengths, offsets, moveColumn, moveColumn + moves};
+        }
+
+        static long align(long position) {
+            return (position + 7) & ~7L;
+        }
+
+        private static ByteBuffer column(MappedByteBuffer map, long start, long size) {
+            ByteBuffer column = map.duplicate();
+            column.position((int) start).limit((int) (start + size));
+            return column.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        String getSize() {
+            return rows + "x" + cols + "x" + connect;
+        }
+
+        int result(int game) {
+            return results.get(game);
+        }
+
+        int length(int game) {
+            return lengths.getShort(game << 1);
+        }
+
+        int offset(int game) {
+            return offsets.getInt(game << 2);
+        }
+
+        int move(int index) {
+            return moveColumn.get(index);
+        }
+    }
+
+    // Collects games in memory and writes them out one segment at a time. A segment is
+    // written under a temporary name and renamed when complete, so readers never see
+    // half a segment.
+    public static class Writer implements Closeable {
+        private final Path dir;
+        private final int rows;
+        private final int cols;
+        private final int connect;
+        private byte[] results = new byte[1024];
+        private short[] lengths = new short[1024];
+        private byte[] moves = new byte[1 << 16];
+        private int games;
+        private int moveCount;
+        private long count;
+
+        public Writer(Path dir, int rows, int cols, int connect) throws IOException {
+            if (rows * cols > Short.MAX_VALUE || cols > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Board " + rows + "x" + cols + " is too big for a game store");
+            }
+            Files.createDirectories(dir);
+            this.dir = dir;
+            this.rows = rows;
+            this.cols = cols;
+            this.connect = connect;
+        }
+
+        public void add(GameRecord record) throws IOException {
+            int length = record.getMoveCount();
+            if (games == SEGMENT_GAMES || moveCount + length > SEGMENT_MOVES) {
+                flush();
+            }
+            if (games == results.length) {
+                results = Arrays.copyOf(results, games * 2);
+                lengths = Arrays.copyOf(lengths, games * 2);
+            }
+            if (moveCount + length > moves.length) {
+                moves = Arrays.copyOf(moves, Math.max(moveCount + length, moves.length * 2));
+            }
+            results[games] = (byte) record.getResult();
+            lengths[games] = (short) length;
+            for (int i = 0; i < length; i++) {
+                moves[moveCount + i] = (byte) record.getMove(i);
+            }
+            games++;
+            moveCount += length;
+            count++;
+        }
+
+        // Write the games added so far as a segment
+        public void flush() throws IOException {
+            if (games == 0) {
+                return;
+            }
+            long[] layout = Segment.layout(games, moveCount);
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            Path temporary = Files.createTempFile(dir, SEGMENT_PREFIX, ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                out.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(connect).putInt(games).putLong(moveCount);
+                for (int game = 0; game < games; game++) {
+                    put(channel, out, 1).put(results[game]);
+                }
+                pad(channel, out, layout[1]);
+                for (int game = 0; game < games; game++) {
+                    put(channel, out, 2).putShort(lengths[game]);
+                }
+                pad(channel, out, layout[2]);
+                int offset = 0;
+                for (int game = 0; game <= games; game++) {
+                    put(channel, out, 4).putInt(offset);
+                    offset += game < games ? lengths[game] : 0;
+                }
+                pad(channel, out, layout[3]);
+                for (int i = 0; i < moveCount; ) {
+                    int bytes = Math.min(put(channel, out, 1).remaining(), moveCount - i);
+                    out.put(moves, i, bytes);
+                    i += bytes;
+                }
+                write(channel, out);
+                channel.force(false);
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+            Files.move(temporary, nextSegment(), StandardCopyOption.ATOMIC_MOVE);
+            games = 0;
+            moveCount = 0;
+        }
+
+        // Games added since the writer was created
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        private Path nextSegment() throws IOException {
+            int next = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    next = Math.max(next, Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())) + 1);
+                }
+            }
+            return dir.resolve(String.format(Locale.ROOT, "%s%06d%s", SEGMENT_PREFIX, next, SEGMENT_SUFFIX));
+        }
+
+        // The buffer, written out first if it has less than bytes left
+        private static ByteBuffer put(FileChannel channel, ByteBuffer out, int bytes) throws IOException {
+            if (out.remaining() < bytes) {
+                write(channel, out);
+            }
+            return out;
+        }
+
+        // Zeros up to a file position
+        private static void pad(FileChannel channel, ByteBuffer out, long position) throws IOException {
+            while (channel.position() + out.position() < position) {
+                put(channel, out, 1).put((byte) 0);
+            }
+        }
+
+        private static void write(FileChannel channel, ByteBuffer out) throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+    }
+}
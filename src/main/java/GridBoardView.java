@@ -0,0 +1,118 @@
+import java.util.function.IntConsumer;
+
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Polygon;
+
+public class GridBoardView implements BoardView {
+
+    // A GridPane with a Circle and a (hidden) star Polygon per cell. Nodes are built
+    // once; moves only change fills and star visibility. Coins appear at once.
+
+    private final Board board;
+    private final GridPane gridPane;
+    private final Circle[][] cells; // coin of every cell
+    private final Polygon[][] stars; // hidden until the cell is part of a win
+    private IntConsumer onColumnClicked = col -> { };
+
+    public GridBoardView(Board board, double radius, double gap) {
+        this.board = board;
+        gridPane = new GridPane();
+        gridPane.setAlignment(Pos.CENTER);
+        gridPane.setHgap(gap);
+        gridPane.setVgap(gap);
+        gridPane.setStyle("-fx-background-color: #87CEEB; -fx-padding: 10;");
+        cells = new Circle[board.getRows()][board.getCols()];
+        stars = new Polygon[board.getRows()][board.getCols()];
+
+        for (int row = 0; row < board.getRows(); row++) {
+            for (int col = 0; col < board.getCols(); col++) {
+                // Create circle for coin
+                Circle circle = new Circle(radius);
+                circle.setStroke(Color.BLACK);
+                circle.setStrokeWidth(2);
+
+                // Star shown on top of winning coins
+                Polygon star = new Polygon();
+                star.getPoints().addAll(
+                    0.0, -15.0,
+                    4.0, -5.0,
+                    15.0, -5.0,
+                    6.0, 2.0,
+                    10.0, 12.0,
+                    0.0, 6.0,
+                    -10.0, 12.0,
+                    -6.0, 2.0,
+                    -15.0, -5.0,
+                    -4.0, -5.0
+                );
+                star.setFill(Color.GOLD);
+                star.setStroke(Color.ORANGE);
+                star.setStrokeWidth(1.5);
+                star.setVisible(false);
+                star.setScaleX(radius / 40);
+                star.setScaleY(radius / 40);
+
+                StackPane stackPane = new StackPane(circle, star);
+                int column = col;
+                stackPane.setOnMouseClicked(e -> onColumnClicked.accept(column));
+                gridPane.add(stackPane, col, row);
+                cells[row][col] = circle;
+                stars[row][col] = star;
+                updateCell(row, col, false);
+            }
+        }
+    }
+
+    @Override
+    public Node getNode() {
+        return gridPane;
+    }
+
+    // Refresh the coin color of a single cell
+    @Override
+    public void updateCell(int row, int col, boolean animate) {
+        int cellValue = board.getCell(row, col);
+        if (cellValue == 0) {
+            cells[row][col].setFill(Color.WHITE);
+        } else if (cellValue == 1) {
+            cells[row][col].setFill(Color.RED);
+        } else {
+            cells[row][col].setFill(Color.YELLOW);
+        }
+    }
+
+    @Override
+    public void showWin(int[][] positions) {
+        for (int[] pos : positions) {
+            stars[pos[0]][pos[1]].setVisible(true);
+        }
+    }
+
+    @Override
+    public void hideWin() {
+        for (Polygon[] row : stars) {
+            for (Polygon star : row) {
+                star.setVisible(false);
+            }
+        }
+    }
+
+    @Override
+    public void redraw() {
+        for (int row = 0; row < board.getRows(); row++) {
+            for (int col = 0; col < board.getCols(); col++) {
+                updateCell(row, col, false);
+            }
+        }
+    }
+
+    @Override
+    public void setOnColumnClicked(IntConsumer onColumnClicked) {
+        this.onColumnClicked = onColumnClicked;
+    }
+}
@@ -1,19 +1,14 @@
-import java.io.File;
-
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.layout.VBox;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
 public class HelpScreen {
     
     private Stage stage;
-    private MediaPlayer sfxPlayer;
     
     public HelpScreen(Stage stage) {
         this.stage = stage;
@@ -29,18 +24,24 @@ public class HelpScreen {
         Label instructions1 = new Label("1. Two players take turns: Red and Yellow");
         instructions1.setFont(new Font("Courier New", 16));
         
-        Label instructions2 = new Label("2. Press keys 1-7 to drop your coin in that column");
+        Label instructions2 = new Label("2. Press a column's key (1, 2, 3, ...) or click it to drop your coin");
         instructions2.setFont(new Font("Courier New", 16));
         
         Label instructions3 = new Label("3. Coins stack on top of each other");
         instructions3.setFont(new Font("Courier New", 16));
         
-        Label instructions4 = new Label("4. Get 4 coins in a row to WIN!");
+        Label instructions4 = new Label("4. Get 4 coins in a row to WIN! (5 on the 20 x 20 board)");
         instructions4.setFont(new Font("Courier New", 16));
         
         Label instructions5 = new Label("5. You can win horizontally, vertically, or diagonally");
         instructions5.setFont(new Font("Courier New", 16));
         
+        Label instructions6 = new Label("6. Play vs Computer: you are Red, the computer plays Yellow");
+        instructions6.setFont(new Font("Courier New", 16));
+        
+        Label instructions7 = new Label("7. Play Online: you are paired with the next player on the server");
+        instructions7.setFont(new Font("Courier New", 16));
+        
         // Create back button
         Button backButton = new Button("Back to Menu");
         backButton.setFont(new Font("Courier New", 15));
@@ -48,11 +49,7 @@ public class HelpScreen {
         
         // When back button is clicked, go back to start screen
         backButton.setOnAction(e -> {
-            try {
-                playButtonSound();
-            } catch (Exception ex) {
-                System.out.println("Could not play button sound");
-            }
+            playButtonSound();
             StartScreen startScreen = new StartScreen(stage);
             startScreen.show();
         });
@@ -61,7 +58,7 @@ public class HelpScreen {
         VBox layout = new VBox(15);
         layout.setAlignment(Pos.CENTER);
         layout.getChildren().addAll(titleLabel, instructions1, instructions2, 
-                                     instructions3, instructions4, instructions5, backButton);
+                                     instructions3, instructions4, instructions5, instructions6, instructions7, backButton);
         layout.setStyle("-fx-background-color: #87CEEB;");
         
         // Create scene
@@ -71,14 +68,6 @@ public class HelpScreen {
     
     // Play button click sound
     private void playButtonSound() {
-        try {
-            File soundFile = new File("src/main/resources/button_press.mp3");
-            Media sound = new Media(soundFile.toURI().toString());
-            sfxPlayer = new MediaPlayer(sound);
-            sfxPlayer.setVolume(0.5);
-            sfxPlayer.play();
-        } catch (Exception e) {
-            System.out.println("Button sound not found: " + e.getMessage());
-        }
+        SoundManager.play(SoundManager.Effect.BUTTON);
     }
 }
\ No newline at end of file
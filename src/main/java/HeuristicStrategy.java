@@ -0,0 +1,68 @@
+import java.util.SplittableRandom;
+
+public class HeuristicStrategy implements Strategy {
+
+    private Board scratch; // reused for trial moves, one instance per thread
+
+    @Override
+    public int chooseMove(Board board, int player, SplittableRandom random) {
+        if (scratch == null) {
+            scratch = new Board(board);
+        }
+        int opponent = 3 - player;
+        int cols = board.getCols();
+
+        // Win now if we can
+        for (int col = 0; col < cols; col++) {
+            if (board.canPlay(col) && winsAfter(board, col, player)) {
+                return col;
+            }
+        }
+
+        // Otherwise block the opponent's win
+        for (int col = 0; col < cols; col++) {
+            if (board.canPlay(col) && winsAfter(board, col, opponent)) {
+                return col;
+            }
+        }
+
+        // Prefer central columns that do not let the opponent win on top
+        int bestCol = -1;
+        int bestScore = Integer.MIN_VALUE;
+        for (int col = 0; col < cols; col++) {
+            if (!board.canPlay(col)) {
+                continue;
+            }
+            int score = (cols - Math.abs(2 * col - (cols - 1))) * 4 + random.nextInt(4);
+            if (givesAwayWin(board, col, player)) {
+                score -= 1000;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestCol = col;
+            }
+        }
+        return bestCol;
+    }
+
+    private boolean winsAfter(Board board, int col, int player) {
+        scratch.copyFrom(board);
+        scratch.dropCoin(col, player);
+        return scratch.checkWin(player);
+    }
+
+    private boolean givesAwayWin(Board board, int col, int player) {
+        scratch.copyFrom(board);
+        scratch.dropCoin(col, player);
+        if (!scratch.canPlay(col)) {
+            return false;
+        }
+        scratch.dropCoin(col, 3 - player);
+        return scratch.checkWin(3 - player);
+    }
+
+    @Override
+    public String getName() {
+        return "heuristic";
+    }
+}
@@ -0,0 +1,400 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+public class HintAnalyzer {
+
+    // What every column would lead to, for the hint row above the board. Each legal
+    // move is played on a copy of the position and the child is searched on its own,
+    // all children side by side on a small pool. A child search runs for one time slice
+    // and then goes to the back of the queue with a slice twice as long, so with fewer
+    // threads than columns every column still gets a first answer within the latency
+    // budget and deeper ones after that. The solver's table keeps what earlier slices
+    // found, so starting the iterative deepening again costs little. A new position
+    // abandons the old one at once: its searches are stopped and its results dropped.
+    // Solvers and tables belong to the analyzer, not to the pool threads: a slice
+    // borrows an idle one (preferably the one its child used before) and gives it back,
+    // so they go away together with the analyzer.
+
+    // First answers for all columns within this time of a move, configurable with -Dconnect4.hint.budgetMillis
+    private static final long BUDGET_MILLIS = Long.getLong("connect4.hint.budgetMillis", 100L);
+
+    // Positions are analyzed for at most this long, configurable with -Dconnect4.hint.timeMillis
+    private static final long TIME_MILLIS = Long.getLong("connect4.hint.timeMillis", 10_000L);
+
+    // Search threads, configurable with -Dconnect4.hint.threads
+    private static final int THREADS = Integer.getInteger("connect4.hint.threads", Runtime.getRuntime().availableProcessors());
+
+    // Transposition table per worker: 16 bytes per entry
+    private static final int TABLE_BITS = 19;
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread thread = new Thread(r, "connect4-hint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int rows;
+    private final int cols;
+    private final int connect;
+    private final int size;
+    private final Executor display; // where onUpdate runs, e.g. Platform::runLater
+    private final Consumer<Hint[]> onUpdate;
+    private final ConcurrentLinkedQueue<Worker> idle = new ConcurrentLinkedQueue<>();
+    private final List<Worker> allWorkers = new CopyOnWriteArrayList<>(); // at most one per pool thread
+    private volatile boolean closed;
+    private volatile Analysis current; // null when nothing is analyzed
+
+    public HintAnalyzer(int rows, int cols, int connect, Executor display, Consumer<Hint[]> onUpdate) {
+        this.rows = rows;
+        this.cols = cols;
+        this.connect = connect;
+        this.size = rows * cols;
+        this.display = display;
+        this.onUpdate = onUpdate;
+    }
+
+    // Hints need the bitboard solver; MCTS has no exact results to show
+    public static boolean supports(int rows, int cols) {
+        return (rows + 1) * cols <= 64;
+    }
+
+    // Start on the position on the board, abandoning the previous one. onUpdate gets
+    // the hints on the display executor, at most one update waiting at a time, and
+    // only while this is still the position being analyzed.
+    public void analyze(Board board) {
+        if (closed) {
+            return;
+        }
+        cancel();
+        int player = board.getMoveCount() % 2 + 1;
+        Analysis analysis = new Analysis(board.getMoveCount());
+        current = analysis;
+
+        int playable = 0;
+        for (int col = 0; col < cols; col++) {
+            if (!board.canPlay(col)) {
+                analysis.hints.set(col, null);
+                continue;
+            }
+            Board child = new Board(board);
+            child.dropCoin(col, player);
+            if (child.checkWin(player)) {
+                analysis.hints.set(col, new Hint(col, Hint.WIN, 1, 0, true));
+            } else if (child.isFull()) {
+                analysis.hints.set(col, new Hint(col, Hint.DRAW, 0, 0, true));
+            } else {
+                analysis.hints.set(col, new Hint(col, Hint.UNKNOWN, 0, 0, false));
+                long opponent = child.getPlayerBits(3 - player);
+                playable++;
+                analysis.tasks.add(new ChildSearch(analysis, col, opponent, opponent | child.getPlayerBits(player)));
+            }
+        }
+        analysis.unanswered = playable;
+
+        // First slices share the budget between the threads; at least one slice of each
+        // child starts in every budget's worth of time
+        long slice = BUDGET_MILLIS * 1_000_000L * Math.min(THREADS, Math.max(1, playable)) / Math.max(1, playable);
+        for (ChildSearch task : analysis.tasks) {
+            task.slice = slice;
+            POOL.execute(task);
+        }
+        analysis.publish();
+    }
+
+    // Stop analyzing; no more updates arrive after this returns
+    public void cancel() {
+        Analysis old = current;
+        current = null;
+        if (old != null) {
+            old.cancelled = true;
+            for (Worker worker : allWorkers) {
+                worker.solver.stop();
+            }
+        }
+    }
+
+    // Stop for good and drop the solvers; slices still running drop theirs when they end
+    public void close() {
+        closed = true;
+        cancel();
+        idle.clear();
+        allWorkers.clear();
+    }
+    
+    // An idle worker, the preferred one if it is free; a new one when all are busy
+    private Worker borrow(Worker preferred) {
+        if (preferred != null && idle.remove(preferred)) {
+            return preferred;
+        }
+        Worker worker = idle.poll();
+        if (worker == null) {
+            worker = new Worker(rows, cols, connect);
+            allWorkers.add(worker);
+        }
+        return worker;
+    }
+    
+    private void giveBack(Worker worker) {
+        if (!closed) {
+            idle.add(worker);
+        }
+    }
+    
+    // One analyzed position
+    private class Analysis {
+        final int moves; // coins on the board
+        final long start = System.nanoTime();
+        final long deadline = start + TIME_MILLIS * 1_000_000L;
+        final AtomicReferenceArray<Hint> hints = new AtomicReferenceArray<>(cols);
+        final List<ChildSearch> tasks = new ArrayList<>();
+        final AtomicBoolean updateQueued = new AtomicBoolean();
+        volatile boolean cancelled;
+        int unanswered; // columns without a first answer, guarded by this
+
+        Analysis(int moves) {
+            this.moves = moves;
+        }
+
+        void update(Hint hint, boolean firstAnswer) {
+            hints.set(hint.getColumn(), hint);
+            if (firstAnswer) {
+                synchronized (this) {
+                    if (--unanswered == 0) {
+                        EngineMetrics.recordHintLatency(System.nanoTime() - start);
+                    }
+                }
+            }
+            publish();
+        }
+
+        // Hand the newest hints to onUpdate, coalescing updates until the last one ran
+        void publish() {
+            if (!cancelled && updateQueued.compareAndSet(false, true)) {
+                display.execute(() -> {
+                    updateQueued.set(false);
+                    if (current == this) {
+                        Hint[] snapshot = new Hint[cols];
+                        for (int col = 0; col < cols; col++) {
+                            snapshot[col] = hints.get(col);
+                        }
+                        onUpdate.accept(snapshot);
+                    }
+                });
+            }
+        }
+    }
+
+    // Solver with the table it keeps across slices, used by one slice at a time
+    private static class Worker {
+        final TranspositionTable table;
+        final Solver solver;
+        Analysis analysis; // position the table was last used for
+
+        Worker(int rows, int cols, int connect) {
+            table = new TranspositionTable(TABLE_BITS);
+            solver = new Solver(rows, cols, connect, table);
+        }
+    }
+
+    // One slice of the search of one child, queued again until its result is proven or time is up
+    private class ChildSearch implements Runnable {
+        final Analysis analysis;
+        final int col;
+        final long position; // opponent's coins, the opponent moves next
+        final long mask;
+        long slice;
+        boolean answered;
+        Worker lastWorker; // has this child's earlier slices in its table
+
+        ChildSearch(Analysis analysis, int col, long position, long mask) {
+            this.analysis = analysis;
+            this.col = col;
+            this.position = position;
+            this.mask = mask;
+        }
+
+        @Override
+        public void run() {
+            if (analysis.cancelled) {
+                return;
+            }
+            Worker worker = borrow(lastWorker);
+            lastWorker = worker;
+            boolean again;
+            try {
+                again = runSlice(worker);
+            } finally {
+                giveBack(worker);
+            }
+            // Queued only now, so the next slice can have the same worker
+            if (again) {
+                slice *= 2;
+                POOL.execute(this);
+            }
+        }
+
+        // Search for one slice; true if the child deserves another, longer one
+        private boolean runSlice(Worker worker) {
+            Solver solver = worker.solver;
+            solver.resetStop();
+            if (analysis.cancelled) {
+                return false;
+            }
+            if (worker.analysis != analysis) {
+                // Entries about earlier positions may be replaced first from now on
+                worker.table.newSearch();
+                worker.analysis = analysis;
+            }
+            long now = System.nanoTime();
+            long deadline = Math.min(analysis.deadline, now + slice);
+            if (!answered) {
+                deadline = Math.min(deadline, Math.max(now, analysis.start + BUDGET_MILLIS * 1_000_000L));
+            }
+            SearchResult result = solver.search(position, mask, analysis.moves + 1, size, deadline, 0, progress -> {
+                if (!analysis.cancelled) {
+                    report(progress);
+                }
+            });
+            if (analysis.cancelled) {
+                return false;
+            }
+            Hint hint = report(result);
+            if (!answered) {
+                // Nothing finished in time: show that this column is still open
+                answered = true;
+                analysis.update(new Hint(col, Hint.UNKNOWN, 0, 0, false), true);
+            }
+            return (hint == null || !hint.isProven()) && System.nanoTime() < analysis.deadline;
+        }
+
+        // Turn the opponent's result for the child into a hint for the player to move; null before depth 1
+        private Hint report(SearchResult result) {
+            if (result.getDepth() == 0) {
+                return null;
+            }
+            Hint hint = toHint(col, analysis.moves, result);
+            boolean first = !answered;
+            answered = true;
+            analysis.update(hint, first);
+            return hint;
+        }
+    }
+
+    // Scores count how soon the winner wins (see Solver): a player that wins by dropping
+    // a coin on a board with p coins scores (size + 1 - p) / 2. The proven result of a
+    // child is the opponent's, so it is turned around here, and the distance is given in
+    // coins the player to move drops, counting the one in this column.
+    private Hint toHint(int col, int moves, SearchResult result) {
+        int score = result.getScore();
+        if (score == 0) {
+            return result.isExact() ? new Hint(col, Hint.DRAW, 0, result.getDepth(), true)
+                    : new Hint(col, Hint.UNKNOWN, 0, result.getDepth(), false);
+        }
+        // Without an evaluator, a score other than 0 is a forced result even at limited depth
+        if (score > 0) {
+            int last = lastBoard(score, moves + 1);
+            return new Hint(col, Hint.LOSS, (last - moves + 1) / 2, result.getDepth(), true);
+        }
+        int last = lastBoard(-score, moves);
+        return new Hint(col, Hint.WIN, (last - moves) / 2 + 1, result.getDepth(), true);
+    }
+
+    // Coins on the board when the winner plays the winning coin, for a winner that moves
+    // on boards with the parity of turn
+    private int lastBoard(int score, int turn) {
+        int last = size + 1 - 2 * score;
+        return (last - turn) % 2 == 0 ? last : last - 1;
+    }
+
+    public static class Hint {
+        public static final int UNKNOWN = 0;
+        public static final int WIN = 1;
+        public static final int LOSS = 2;
+        public static final int DRAW = 3;
+
+        private final int column;
+        private final int outcome; // for the player to move, after a coin in this column
+        private final int distance; // coins the player to move drops until the game ends, 0 if unknown or a draw
+        private final int depth; // plies searched after this move
+        private final boolean proven;
+
+        public Hint(int column, int outcome, int distance, int depth, boolean proven) {
+            this.column = column;
+            this.outcome = outcome;
+            this.distance = distance;
+            this.depth = depth;
+            this.proven = proven;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public int getOutcome() {
+            return outcome;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public boolean isProven() {
+            return proven;
+        }
+
+        // Short text for above the column: W3 (win with the 3rd coin), L2, D, or ?12 (nothing within 12 plies)
+        public String getLabel() {
+            switch (outcome) {
+                case WIN:
+                    return "W" + distance;
+                case LOSS:
+                    return "L" + distance;
+                case DRAW:
+                    return "D";
+                default:
+                    return depth > 0 ? "?" + depth : "?";
+            }
+        }
+
+        public String getDescription() {
+            switch (outcome) {
+                case WIN:
+                    return "Wins, with the " + ordinal(distance) + " coin from here";
+                case LOSS:
+                    return distance == 1 ? "Loses at once" : "Loses after " + distance + " coins";
+                case DRAW:
+                    return "Draw";
+                default:
+                    return depth > 0 ? "No result within " + depth + " moves" : "Not searched yet";
+            }
+        }
+
+        private static String ordinal(int n) {
+            if (n % 100 >= 11 && n % 100 <= 13) {
+                return n + "th";
+            }
+            switch (n % 10) {
+                case 1:
+                    return n + "st";
+                case 2:
+                    return n + "nd";
+                case 3:
+                    return n + "rd";
+                default:
+                    return n + "th";
+            }
+        }
+    }
+}
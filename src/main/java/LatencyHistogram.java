@@ -0,0 +1,72 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+    // Log-linear buckets: values below 8 get their own bucket, larger ones are split
+    // into 8 buckets per power of two, so percentiles are within about 12%.
+    private static final int BUCKETS = 61 * 8;
+
+    private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    // Copy of the bucket counts, e.g. to subtract an earlier copy
+    public long[] snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    public static long count(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Value below which the given fraction of samples fall (upper bucket bound), 0 when empty
+    public static long percentile(long[] counts, double fraction) {
+        long total = count(counts);
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    private static int bucket(long value) {
+        if (value < 8) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - 3)) & 7;
+        return Math.min(BUCKETS - 1, (exp - 2) * 8 + sub);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < 8) {
+            return bucket;
+        }
+        int exp = bucket / 8 + 2;
+        int sub = bucket % 8;
+        return ((8L + sub + 1) << (exp - 3)) - 1;
+    }
+}
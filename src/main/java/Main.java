@@ -5,6 +5,11 @@ public class Main extends Application {
     
     @Override
     public void start(Stage primaryStage) {
+        StartupTimer.mark("JavaFX started");
+        
+        // Decode sound effects in the background so the window shows right away
+        SoundManager.preloadAsync();
+        
         // Create the start screen
         StartScreen startScreen = new StartScreen(primaryStage);
         startScreen.show();
@@ -12,10 +17,13 @@ public class Main extends Application {
         // Set up the window
         primaryStage.setTitle("Connect 4 Game");
         primaryStage.setResizable(false);
+        StartupTimer.watchFirstFrame(primaryStage.getScene());
         primaryStage.show();
+        StartupTimer.mark("stage shown");
     }
     
     public static void main(String[] args) {
+        StartupTimer.markMain();
         launch(args);
     }
-}
\ No newline at end of file
+}
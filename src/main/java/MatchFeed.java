@@ -0,0 +1,190 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class MatchFeed implements Flow.Publisher<MatchFeed.Frame>, AutoCloseable {
+
+    // Fans one game out to any number of spectators. Every frame holds the whole game
+    // so far, so a spectator can skip frames and still show the right board. Publishing
+    // never blocks: each subscriber gets its own bounded buffer and its own delivery
+    // task, and a subscriber whose buffer is full just misses that frame (counted in
+    // getDropped). The newest frame is offered again shortly after a miss, so a
+    // spectator that fell behind still ends up on the current position even when no
+    // more moves come; subscribers skip frames they have seen by sequence number.
+    // Subscribers see only frames published after they subscribed; getLatest() is the
+    // position to start from.
+
+    // Frames buffered per subscriber before it starts missing some
+    private static final int BUFFER_CAPACITY = 64;
+
+    // Wait before offering the newest frame again after a miss, and how long close() keeps trying
+    private static final long RESEND_MILLIS = 50;
+    private static final long CLOSE_RETRY_NANOS = 2_000_000_000L;
+
+    // Deliveries may block (spectators on sockets), so they get their own threads
+    private static final ExecutorService DELIVERY = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "connect4-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ScheduledExecutorService RESEND = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "connect4-feed-resend");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SubmissionPublisher<Frame> publisher = new SubmissionPublisher<>(DELIVERY, BUFFER_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private volatile Frame latest;
+    private long nextSequence; // guarded by this
+    private final AtomicBoolean resendScheduled = new AtomicBoolean();
+    private volatile long closeDeadline; // when close() was called plus CLOSE_RETRY_NANOS, 0 = open
+
+    // Publish the position on a board (call it after every change, including undo and restart)
+    public void publish(Board board) {
+        publish(board.getRows(), board.getCols(), board.getConnect(), GameRecord.of(board));
+    }
+
+    // Publish a game in progress as a record of its moves
+    public void publish(int rows, int cols, int connect, GameRecord record) {
+        byte[] moves = new byte[record.getMoveCount()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = (byte) record.getMove(i);
+        }
+        Frame frame;
+        synchronized (this) {
+            frame = new Frame(nextSequence++, rows, cols, connect, moves, record.getResult());
+            latest = frame;
+        }
+        offer(frame);
+    }
+
+    private void offer(Frame frame) {
+        if (!publisher.hasSubscribers()) {
+            return;
+        }
+        try {
+            publisher.offer(frame, (subscriber, missed) -> {
+                dropped.increment();
+                scheduleResend();
+                return false;
+            });
+        } catch (IllegalStateException e) {
+            // Closed meanwhile, nobody is listening any more
+        }
+    }
+
+    private void scheduleResend() {
+        if (resendScheduled.compareAndSet(false, true)) {
+            RESEND.schedule(this::resend, RESEND_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Runs on the RESEND thread only, which is also where the publisher gets closed
+    private void resend() {
+        resendScheduled.set(false);
+        offer(latest); // Missing again schedules another try
+        long deadline = closeDeadline;
+        if (deadline != 0 && (!resendScheduled.get() || System.nanoTime() > deadline)) {
+            publisher.close();
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Frame> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    // Most recent frame, null before the first one
+    public Frame getLatest() {
+        return latest;
+    }
+
+    public int getSubscriberCount() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    // Frames that subscribers missed because they fell behind
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // Subscribers get onComplete once they have taken their buffered frames; a subscriber
+    // that missed the newest frame gets a little while to catch up first
+    @Override
+    public synchronized void close() {
+        if (closeDeadline == 0) {
+            closeDeadline = System.nanoTime() + CLOSE_RETRY_NANOS;
+            RESEND.execute(this::resend);
+        }
+    }
+
+    // The game at one moment. Immutable; sequence numbers grow with every publish,
+    // so subscribers can ignore a frame older than one they already showed.
+    public static class Frame {
+        private final long sequence;
+        private final int rows;
+        private final int cols;
+        private final int connect;
+        private final byte[] moves;
+        private final int result; // see GameRecord
+
+        public Frame(long sequence, int rows, int cols, int connect, byte[] moves, int result) {
+            this.sequence = sequence;
+            this.rows = rows;
+            this.cols = cols;
+            this.connect = connect;
+            this.moves = moves;
+            this.result = result;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        public int getConnect() {
+            return connect;
+        }
+
+        public int getMoveCount() {
+            return moves.length;
+        }
+
+        public int getMove(int index) {
+            return moves[index] & 0xFF;
+        }
+
+        public int getResult() {
+            return result;
+        }
+
+        // Number of moves this frame adds to a board showing an earlier point of the
+        // same game, or -1 if the board is not on the way to this frame
+        public int movesAfter(Board board) {
+            if (board.getRows() != rows || board.getCols() != cols || board.getConnect() != connect
+                    || board.getMoveCount() > moves.length) {
+                return -1;
+            }
+            for (int i = 0; i < board.getMoveCount(); i++) {
+                if (board.getMove(i) != getMove(i)) {
+                    return -1;
+                }
+            }
+            return moves.length - board.getMoveCount();
+        }
+    }
+}
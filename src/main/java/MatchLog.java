@@ -0,0 +1,617 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+public class MatchLog implements Closeable {
+
+    // Write-ahead log of the matches being played, so they survive a crash. Every
+    // change is a record of a few bytes: START (id, rows, cols, connect, kind), MOVE
+    // (id, column), UNDO (id) and END (id, result), with ids as varints. Records are
+    // collected in memory and written by commit() as one frame (length, CRC32,
+    // records); all threads that commit at the same time share a single write and
+    // fsync (group commit), and a torn frame at the end of the log is cut off when
+    // the log is opened again.
+    //
+    // The log is a directory of segments, log-N.wal. Once a segment is bigger than
+    // SNAPSHOT_BYTES the next commit starts segment N + 1 and writes snapshot-(N+1).bin,
+    // the unfinished matches at that point, after which older files are deleted.
+    // Opening a log loads the newest snapshot and replays the segments after it; the
+    // recovered state is then written as a snapshot of its own, so a log that is opened
+    // often but never grows to SNAPSHOT_BYTES is compacted too.
+
+    // Kinds of match, see startMatch
+    public static final int LOCAL_TWO_PLAYER = 0;
+    public static final int LOCAL_VS_COMPUTER = 1;
+    public static final int SERVER = 2;
+
+    private static final byte START = 1;
+    private static final byte MOVE = 2;
+    private static final byte UNDO = 3;
+    private static final byte END = 4;
+
+    private static final int SNAPSHOT_MAGIC = 0x43345753; // "C4WS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int FRAME_HEADER = 8;
+
+    // Segment size that triggers a snapshot, configurable with -Dconnect4.wal.snapshotBytes
+    private static final long SNAPSHOT_BYTES = Long.getLong("connect4.wal.snapshotBytes", 32L << 20);
+
+    // Snapshots and commitLater() run here, off the threads that append
+    private static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "connect4-wal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path dir;
+    private final boolean force; // fsync every commit; off only for benchmarks
+
+    // Guarded by this: records not written yet and the matches they leave unfinished
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private final Map<Long, Match> live = new LinkedHashMap<>();
+    private long nextId = 1;
+    private long appended; // bytes of records ever appended
+    private long durable; // bytes of records known to be on disk
+    private boolean flushing; // a thread is writing a frame
+    private IOException failure; // the log stopped working, every commit throws this
+
+    // Only touched by the thread that holds flushing
+    private FileChannel channel;
+    private int segment;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER);
+
+    private long commits; // frames written
+    private long recoveredMoves;
+    private long recoveryNanos;
+
+    private MatchLog(Path dir, boolean force) {
+        this.dir = dir;
+        this.force = force;
+    }
+
+    // Open or create the log in a directory and recover the unfinished matches in it
+    public static MatchLog open(Path dir) throws IOException {
+        return open(dir, true);
+    }
+
+    // force = false skips the fsync; commits then only survive a crash of the process, not of the machine
+    public static MatchLog open(Path dir, boolean force) throws IOException {
+        return open(dir, force, true);
+    }
+
+    // compact = false leaves the replayed segments in place, so recovery can be measured again
+    static MatchLog open(Path dir, boolean force, boolean compact) throws IOException {
+        Files.createDirectories(dir);
+        MatchLog log = new MatchLog(dir, force);
+        log.recover(compact);
+        return log;
+    }
+
+    // Log a new match and return its id
+    public synchronized long startMatch(int rows, int cols, int connect, int kind) {
+        long id = nextId++;
+        live.put(id, new Match(id, rows, cols, connect, kind));
+        record(START, id, 4).put((byte) rows).put((byte) cols).put((byte) connect).put((byte) kind);
+        return id;
+    }
+
+    public synchronized void move(long id, int col) {
+        Match match = live.get(id);
+        if (match != null) {
+            match.add(col);
+            record(MOVE, id, 1).put((byte) col);
+        }
+    }
+
+    // Take back the last move
+    public synchronized void undo(long id) {
+        Match match = live.get(id);
+        if (match != null && match.length > 0) {
+            match.length--;
+            record(UNDO, id, 0);
+        }
+    }
+
+    // The match is over (result as the caller likes, e.g. a GameRecord result); it is not recovered any more
+    public synchronized void endMatch(long id, int result) {
+        if (live.remove(id) != null) {
+            record(END, id, 1).put((byte) result);
+        }
+    }
+
+    // Copies of the unfinished matches, oldest first
+    public synchronized List<Match> getLiveMatches() {
+        List<Match> matches = new ArrayList<>();
+        for (Match match : live.values()) {
+            matches.add(match.copy());
+        }
+        return matches;
+    }
+
+    // Make everything appended so far durable. Threads arriving while a frame is being
+    // written wait for it and then write everything that piled up meanwhile in one go.
+    public void commit() throws IOException {
+        ByteBuffer batch;
+        long end;
+        Map<Long, Match> snapshot = null;
+        synchronized (this) {
+            long target = appended;
+            while (flushing && durable < target && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while committing the match log");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (durable >= target) {
+                return;
+            }
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            spare = null;
+            end = appended;
+            if (channel.position() + FRAME_HEADER + batch.position() >= SNAPSHOT_BYTES) {
+                // The state after this batch is what the next segment starts from
+                snapshot = new LinkedHashMap<>();
+                for (Match match : live.values()) {
+                    snapshot.put(match.id, match.copy());
+                }
+            }
+        }
+
+        IOException error = null;
+        try {
+            writeFrame(batch);
+            if (snapshot != null) {
+                startSegment(segment + 1);
+                int covered = segment;
+                long idAfter;
+                synchronized (this) {
+                    idAfter = nextId;
+                }
+                Map<Long, Match> state = snapshot;
+                BACKGROUND.execute(() -> writeSnapshot(covered, state, idAfter));
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            flushing = false;
+            batch.clear();
+            spare = batch;
+            if (error != null) {
+                failure = error;
+            } else {
+                durable = end;
+                commits++;
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // commit() on a background thread, for callers that must not wait for the disk
+    public void commitLater() {
+        BACKGROUND.execute(() -> {
+            try {
+                commit();
+            } catch (IOException e) {
+                System.out.println("Could not write the match log: " + e.getMessage());
+            }
+        });
+    }
+
+    // Commit what is left and close the current segment
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            synchronized (this) {
+                while (flushing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                if (failure == null) {
+                    failure = new IOException("Match log is closed");
+                }
+                channel.close();
+            }
+        }
+    }
+
+    // Frames written so far; appended records per frame show how well commits were grouped
+    public synchronized long getCommitCount() {
+        return commits;
+    }
+
+    public synchronized long getAppendedBytes() {
+        return appended;
+    }
+
+    // Moves of unfinished matches found when the log was opened, and how long that took
+    public long getRecoveredMoves() {
+        return recoveredMoves;
+    }
+
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    // Start a record in the pending buffer, growing it for the bytes that follow the id
+    private ByteBuffer record(byte type, long id, int bytes) {
+        if (pending.remaining() < 1 + 10 + bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        int start = pending.position();
+        pending.put(type);
+        putVarLong(pending, id);
+        appended += pending.position() - start + bytes;
+        return pending;
+    }
+
+    private void writeFrame(ByteBuffer batch) throws IOException {
+        batch.flip();
+        crc.reset();
+        crc.update(batch.duplicate());
+        frameHeader.clear();
+        frameHeader.putInt(batch.remaining()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] frame = {frameHeader, batch};
+        while (batch.hasRemaining()) {
+            channel.write(frame);
+        }
+        if (force) {
+            channel.force(false);
+        }
+    }
+
+    // Switch appending to a new, empty segment file
+    private void startSegment(int number) throws IOException {
+        FileChannel next = FileChannel.open(segmentFile(number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        if (channel != null) {
+            channel.close();
+        }
+        channel = next;
+        segment = number;
+        if (force) {
+            forceDirectory();
+        }
+    }
+
+    // Snapshot of the state at the start of a segment; then the files before it are not needed
+    private void writeSnapshot(int number, Map<Long, Match> state, long idAfter) {
+        try {
+            ByteBuffer out = ByteBuffer.allocate(64);
+            out.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(idAfter).putInt(state.size());
+            for (Match match : state.values()) {
+                if (out.remaining() < 30 + match.length) {
+                    ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + 30 + match.length));
+                    out.flip();
+                    bigger.put(out);
+                    out = bigger;
+                }
+                putVarLong(out, match.id);
+                out.put((byte) match.rows).put((byte) match.cols).put((byte) match.connect).put((byte) match.kind);
+                putVarLong(out, match.length);
+                out.put(match.moves, 0, match.length);
+            }
+            CRC32 check = new CRC32();
+            check.update(out.array(), 0, out.position());
+            if (out.remaining() < 4) {
+                out = ByteBuffer.allocate(out.position() + 4).put(out.array(), 0, out.position());
+            }
+            out.putInt((int) check.getValue()).flip();
+
+            Path temporary = dir.resolve(snapshotName(number) + ".tmp");
+            try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) {
+                    file.write(out);
+                }
+                file.force(false);
+            }
+            Files.move(temporary, dir.resolve(snapshotName(number)), StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+
+            for (Path file : list("log-*.wal")) {
+                if (number(file) < number) {
+                    Files.delete(file);
+                }
+            }
+            for (Path file : list("snapshot-*.bin")) {
+                if (number(file) < number) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write a match log snapshot: " + e.getMessage());
+        }
+    }
+
+    // Load the newest readable snapshot, replay the segments after it and start a new segment
+    private void recover(boolean compact) throws IOException {
+        long start = System.nanoTime();
+        int first = 0;
+        List<Path> snapshots = list("snapshot-*.bin");
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            if (readSnapshot(snapshots.get(i))) {
+                first = number(snapshots.get(i));
+                break;
+            }
+        }
+
+        int last = first - 1;
+        List<Path> segments = list("log-*.wal");
+        for (int i = 0; i < segments.size(); i++) {
+            int number = number(segments.get(i));
+            if (number >= first) {
+                replay(segments.get(i), i == segments.size() - 1);
+                last = number;
+            }
+        }
+        startSegment(last + 1);
+        if (compact && last >= first) {
+            // Nothing else uses the log yet, so the snapshot can be taken from live as it is
+            writeSnapshot(last + 1, live, nextId);
+        }
+        for (Match match : live.values()) {
+            recoveredMoves += match.length;
+        }
+        recoveryNanos = System.nanoTime() - start;
+    }
+
+    private boolean readSnapshot(Path file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (in.remaining() < 24 || in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+            return false;
+        }
+        CRC32 check = new CRC32();
+        check.update(in.array(), 0, in.limit() - 4);
+        if ((int) check.getValue() != in.getInt(in.limit() - 4)) {
+            return false;
+        }
+        nextId = in.getLong();
+        int count = in.getInt();
+        live.clear();
+        for (int i = 0; i < count; i++) {
+            long id = getVarLong(in);
+            Match match = new Match(id, in.get() & 0xFF, in.get() & 0xFF, in.get() & 0xFF, in.get() & 0xFF);
+            int length = (int) getVarLong(in);
+            for (int m = 0; m < length; m++) {
+                match.add(in.get() & 0xFF);
+            }
+            live.put(id, match);
+        }
+        return true;
+    }
+
+    // Apply every complete frame of a segment; a torn frame at the end of the last one is cut off
+    private void replay(Path file, boolean last) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.allocate((int) in.size());
+            while (data.hasRemaining() && in.read(data) >= 0) {
+                // Read the whole segment
+            }
+            data.flip();
+            CRC32 check = new CRC32();
+            while (data.hasRemaining()) {
+                int frameStart = data.position();
+                boolean complete = data.remaining() >= FRAME_HEADER;
+                int length = complete ? data.getInt() : 0;
+                int sum = complete ? data.getInt() : 0;
+                complete = complete && length >= 0 && length <= data.remaining();
+                if (complete) {
+                    check.reset();
+                    ByteBuffer records = data.slice();
+                    records.limit(length);
+                    check.update(records.duplicate());
+                    complete = (int) check.getValue() == sum;
+                    if (complete) {
+                        apply(records);
+                        data.position(data.position() + length);
+                    }
+                }
+                if (!complete) {
+                    if (!last) {
+                        throw new IOException("Match log segment " + file + " is corrupt at byte " + frameStart);
+                    }
+                    System.out.printf(Locale.ROOT, "Match log: dropped %d bytes of an unfinished commit at the end of %s%n",
+                            data.limit() - frameStart, file);
+                    in.truncate(frameStart);
+                    in.force(true);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(ByteBuffer records) {
+        while (records.hasRemaining()) {
+            byte type = records.get();
+            long id = getVarLong(records);
+            nextId = Math.max(nextId, id + 1);
+            switch (type) {
+                case START:
+                    live.put(id, new Match(id, records.get() & 0xFF, records.get() & 0xFF, records.get() & 0xFF,
+                            records.get() & 0xFF));
+                    break;
+                case MOVE: {
+                    int col = records.get() & 0xFF;
+                    Match match = live.get(id);
+                    if (match != null) {
+                        match.add(col);
+                    }
+                    break;
+                }
+                case UNDO: {
+                    Match match = live.get(id);
+                    if (match != null && match.length > 0) {
+                        match.length--;
+                    }
+                    break;
+                }
+                case END:
+                    records.get();
+                    live.remove(id);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown match log record " + type);
+            }
+        }
+    }
+
+    private List<Path> list(String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort((a, b) -> Integer.compare(number(a), number(b)));
+        return files;
+    }
+
+    // Make renames and new files in the directory durable (not possible on every platform)
+    private void forceDirectory() {
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on Windows; NTFS journals the rename anyway
+        }
+    }
+
+    private Path segmentFile(int number) {
+        return dir.resolve(String.format(Locale.ROOT, "log-%06d.wal", number));
+    }
+
+    private static String snapshotName(int number) {
+        return String.format(Locale.ROOT, "snapshot-%06d.bin", number);
+    }
+
+    // The number in log-N.wal or snapshot-N.bin
+    private static int number(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    // An unfinished match: its board size and the columns played so far
+    public static class Match {
+        private final long id;
+        private final int rows;
+        private final int cols;
+        private final int connect;
+        private final int kind;
+        private byte[] moves = new byte[16];
+        private int length;
+
+        Match(long id, int rows, int cols, int connect, int kind) {
+            this.id = id;
+            this.rows = rows;
+            this.cols = cols;
+            this.connect = connect;
+            this.kind = kind;
+        }
+
+        void add(int col) {
+            if (length == moves.length) {
+                moves = Arrays.copyOf(moves, length * 2);
+            }
+            moves[length++] = (byte) col;
+        }
+
+        Match copy() {
+            Match copy = new Match(id, rows, cols, connect, kind);
+            copy.moves = Arrays.copyOf(moves, Math.max(1, length));
+            copy.length = length;
+            return copy;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        public int getConnect() {
+            return connect;
+        }
+
+        public int getKind() {
+            return kind;
+        }
+
+        public int getMoveCount() {
+            return length;
+        }
+
+        public int getMove(int index) {
+            return moves[index] & 0xFF;
+        }
+
+        // The position, Red moving first
+        public Board toBoard() {
+            Board board = new Board(rows, cols, connect);
+            for (int i = 0; i < length; i++) {
+                board.dropCoin(getMove(i), i % 2 + 1);
+            }
+            return board;
+        }
+    }
+}
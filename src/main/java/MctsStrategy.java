@@ -0,0 +1,25 @@
+import java.util.SplittableRandom;
+
+public class MctsStrategy implements Strategy {
+
+    private long rollouts;
+    private MonteCarloSearch search; // created on first use, one instance per thread
+
+    public MctsStrategy(long rollouts) {
+        this.rollouts = rollouts;
+    }
+
+    @Override
+    public int chooseMove(Board board, int player, SplittableRandom random) {
+        if (search == null) {
+            search = new MonteCarloSearch(board.getRows(), board.getCols(), board.getConnect(), 1, 1 << 16, 4);
+        }
+        // A rollout budget on one thread keeps seeded games reproducible
+        return search.search(board, player, 0, rollouts, random.nextLong(), null, () -> false).getColumn();
+    }
+
+    @Override
+    public String getName() {
+        return "mcts:" + rollouts;
+    }
+}
@@ -0,0 +1,374 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+public class MonteCarloSearch {
+
+    // Root-parallel UCT: every thread grows its own tree from the same position and the
+    // root visit counts are added up at the end. Works on any Board size, so it plays
+    // where the bitboard solver cannot. Trees live in primitive arrays allocated once,
+    // and rollouts play on a per-thread Board that is undone afterwards, so a think
+    // allocates (almost) nothing.
+
+    // Arena cost of one tree node: firstChild, visits, value (ints), move, childCount (shorts), terminal (byte)
+    public static final int BYTES_PER_NODE = 4 + 4 + 4 + 2 + 2 + 1;
+
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final long PROGRESS_NANOS = 100_000_000L;
+
+    // Node results known without a rollout
+    private static final byte NOT_TERMINAL = 0;
+    private static final byte WIN = 1; // the player who moved into the node won
+    private static final byte DRAW = 2;
+
+    private Worker[] workers; // workers[0] runs on the calling thread, the rest are helpers
+    private ExecutorService helperPool;
+
+    // threads trees of nodesPerThread nodes each; batch rollouts are played per expanded leaf
+    public MonteCarloSearch(int rows, int cols, int connect, int threads, int nodesPerThread, int batch) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        if (nodesPerThread < cols + 1 || batch < 1) {
+            throw new IllegalArgumentException("Need room for at least the root's children and one rollout per leaf");
+        }
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(rows, cols, connect, nodesPerThread, batch);
+        }
+        if (threads > 1) {
+            helperPool = Executors.newFixedThreadPool(threads - 1, r -> {
+                Thread thread = new Thread(r, "connect4-mcts-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // Best move for player within a time budget
+    public SearchResult search(Board board, int player, long timeLimitMillis) {
+        return search(board, player, timeLimitMillis, 0, System.nanoTime(), null, () -> false);
+    }
+
+    // Think until the time limit or maxRollouts (0 = no limit for either, but not both),
+    // whichever comes first. With a rollout limit and one thread the move only depends on
+    // the seed. progress (may be null) gets the current best move about every 100 ms; the
+    // result's depth is the deepest tree node and nodes counts rollouts. Returns null if
+    // cancelled is true once the stop flags are reset (see ParallelSearch).
+    public SearchResult search(Board board, int player, long timeLimitMillis, long maxRollouts, long seed,
+                               Consumer<SearchResult> progress, BooleanSupplier cancelled) {
+        if (timeLimitMillis <= 0 && maxRollouts <= 0) {
+            throw new IllegalArgumentException("Need a time limit or a rollout limit");
+        }
+        long start = System.nanoTime();
+        long deadline = timeLimitMillis > 0 ? start + timeLimitMillis * 1_000_000L : 0;
+        long rolloutsEach = maxRollouts > 0 ? Math.max(1, maxRollouts / workers.length) : 0;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].prepare(board, player, seed + i);
+        }
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+
+        // Nothing to think about with a single legal move, or none
+        Worker main = workers[0];
+        if (main.rootChildren() <= 1) {
+            return new SearchResult(main.rootChildren() == 0 ? -1 : main.bestColumn(), 0, 1, false, 0,
+                    System.nanoTime() - start);
+        }
+
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            Worker helper = workers[i];
+            helpers.add(helperPool.submit(() -> helper.think(deadline, rolloutsEach, null, start)));
+        }
+        main.think(deadline, rolloutsEach, progress, start);
+        for (int i = 1; i < workers.length; i++) {
+            workers[i].stop();
+        }
+        for (Future<?> future : helpers) {
+            await(future);
+        }
+
+        // Most visited root move over all trees; every tree lists the root moves in the same order
+        int children = main.rootChildren();
+        long bestVisits = -1;
+        int bestChild = 0;
+        long rollouts = 0;
+        int depth = 0;
+        for (Worker worker : workers) {
+            rollouts += worker.rollouts;
+            depth = Math.max(depth, worker.maxDepth);
+        }
+        for (int child = 0; child < children; child++) {
+            long visits = 0;
+            for (Worker worker : workers) {
+                visits += worker.rootChildVisits(child);
+            }
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                bestChild = child;
+            }
+        }
+        return new SearchResult(main.rootChildColumn(bestChild), 0, depth, false, rollouts,
+                System.nanoTime() - start);
+    }
+
+    // Stop a running search from another thread
+    public void stop() {
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    public int getThreadCount() {
+        return workers.length;
+    }
+
+    public void shutdown() {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+        }
+    }
+
+    private void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for search helpers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        }
+    }
+
+    // One tree and the board it is explored on. Node 0 is the root; the children of a
+    // node are stored next to each other from firstChild. A node's value counts half
+    // points (win 2, draw 1) for the player who moved into it.
+    private static class Worker {
+        private final int capacity;
+        private final int batch;
+        private final int[] firstChild;
+        private final int[] visits;
+        private final int[] value;
+        private final short[] move;
+        private final short[] childCount;
+        private final byte[] terminal;
+        private int nodeCount;
+
+        private final Board board;
+        private final int[] path; // nodes from the root to the current leaf
+        private final int[] results = new int[3]; // draws, Red wins, Yellow wins of one batch
+        private SplittableRandom random;
+        private int rootPlayer; // player to move at the root
+        private int rootMoves;
+        private long rollouts;
+        private int maxDepth;
+        private volatile boolean stopRequested;
+
+        Worker(int rows, int cols, int connect, int capacity, int batch) {
+            this.capacity = capacity;
+            this.batch = batch;
+            firstChild = new int[capacity];
+            visits = new int[capacity];
+            value = new int[capacity];
+            move = new short[capacity];
+            childCount = new short[capacity];
+            terminal = new byte[capacity];
+            board = new Board(rows, cols, connect);
+            path = new int[rows * cols + 1];
+        }
+
+        // Start a new tree for this position, with the root already expanded
+        void prepare(Board position, int player, long seed) {
+            board.copyFrom(position);
+            random = new SplittableRandom(seed);
+            rootPlayer = player;
+            rootMoves = position.getMoveCount();
+            rollouts = 0;
+            maxDepth = 0;
+            stopRequested = false;
+            nodeCount = 1;
+            visits[0] = 0;
+            value[0] = 0;
+            childCount[0] = 0;
+            terminal[0] = NOT_TERMINAL;
+            expand(0);
+        }
+
+        void stop() {
+            stopRequested = true;
+        }
+
+        void think(long deadline, long maxRollouts, Consumer<SearchResult> progress, long start) {
+            long nextProgress = start + PROGRESS_NANOS;
+            for (int iteration = 1; !stopRequested; iteration++) {
+                playout();
+                if (maxRollouts > 0 && rollouts >= maxRollouts) {
+                    break;
+                }
+                if ((iteration & 15) == 0) {
+                    long now = System.nanoTime();
+                    if (deadline != 0 && now >= deadline) {
+                        break;
+                    }
+                    if (progress != null && now >= nextProgress) {
+                        nextProgress = now + PROGRESS_NANOS;
+                        progress.accept(new SearchResult(bestColumn(), 0, maxDepth, false, rollouts, now - start));
+                    }
+                }
+            }
+        }
+
+        // Select a leaf with UCT, expand it, roll out from it and back the results up
+        private void playout() {
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            while (childCount[node] > 0 && terminal[node] == NOT_TERMINAL) {
+                node = select(node);
+                int mover = board.getMoveCount() % 2 == rootMoves % 2 ? rootPlayer : 3 - rootPlayer;
+                board.dropCoin(move[node], mover);
+                if (visits[node] == 0) {
+                    terminal[node] = board.checkWin(mover) ? WIN : board.isFull() ? DRAW : NOT_TERMINAL;
+                }
+                path[++depth] = node;
+            }
+            if (depth > maxDepth) {
+                maxDepth = depth;
+            }
+
+            int[] wins = results;
+            wins[0] = 0;
+            wins[1] = 0;
+            wins[2] = 0;
+            int count = batch;
+            if (terminal[node] != NOT_TERMINAL) {
+                int last = board.getMovePlayer(board.getMoveCount() - 1);
+                wins[terminal[node] == WIN ? last : 0] += count;
+            } else {
+                if (visits[node] > 0) {
+                    expand(node);
+                }
+                int leafMoves = board.getMoveCount();
+                for (int i = 0; i < count; i++) {
+                    wins[rollout()]++;
+                    while (board.getMoveCount() > leafMoves) {
+                        board.undo();
+                    }
+                }
+            }
+            rollouts += count; // A finished game counts too, its result is just known already
+
+            // Back up from the leaf, then take the tree's moves off the board
+            for (int i = depth; i >= 0; i--) {
+                int n = path[i];
+                int mover = (i % 2 == 1) ? rootPlayer : 3 - rootPlayer;
+                visits[n] += count;
+                value[n] += 2 * wins[mover] + wins[0];
+            }
+            while (board.getMoveCount() > rootMoves) {
+                board.undo();
+            }
+        }
+
+        // UCT child of node; unvisited children first, a child that wins at once always
+        private int select(int node) {
+            int first = firstChild[node];
+            int last = first + childCount[node];
+            double logVisits = Math.log(Math.max(1, visits[node]));
+            int best = first;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < last; child++) {
+                if (visits[child] == 0) {
+                    return child;
+                }
+                if (terminal[child] == WIN) {
+                    return child;
+                }
+                double score = value[child] / (2.0 * visits[child])
+                        + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        // Add a child for every playable column, unless the arena is full
+        private void expand(int node) {
+            if (childCount[node] > 0) {
+                return;
+            }
+            int cols = board.getCols();
+            int playable = 0;
+            for (int col = 0; col < cols; col++) {
+                if (board.canPlay(col)) {
+                    playable++;
+                }
+            }
+            if (nodeCount + playable > capacity) {
+                return; // Out of nodes: keep rolling out from this leaf
+            }
+            firstChild[node] = nodeCount;
+            for (int col = 0; col < cols; col++) {
+                if (board.canPlay(col)) {
+                    int child = nodeCount++;
+                    move[child] = (short) col;
+                    visits[child] = 0;
+                    value[child] = 0;
+                    childCount[child] = 0;
+                    terminal[child] = NOT_TERMINAL;
+                }
+            }
+            childCount[node] = (short) playable;
+        }
+
+        // Random moves until the game ends; returns the winner, or 0 for a draw
+        private int rollout() {
+            int cols = board.getCols();
+            int player = board.getMoveCount() % 2 == rootMoves % 2 ? rootPlayer : 3 - rootPlayer;
+            while (!board.isFull()) {
+                int col = random.nextInt(cols);
+                while (!board.canPlay(col)) {
+                    col = col + 1 == cols ? 0 : col + 1;
+                }
+                board.dropCoin(col, player);
+                if (board.checkWin(player)) {
+                    return player;
+                }
+                player = 3 - player;
+            }
+            return 0;
+        }
+
+        int rootChildren() {
+            return childCount[0];
+        }
+
+        int rootChildColumn(int child) {
+            return move[firstChild[0] + child];
+        }
+
+        int rootChildVisits(int child) {
+            return visits[firstChild[0] + child];
+        }
+
+        int bestColumn() {
+            int best = 0;
+            for (int child = 1; child < childCount[0]; child++) {
+                if (rootChildVisits(child) > rootChildVisits(best)) {
+                    best = child;
+                }
+            }
+            return rootChildColumn(best);
+        }
+    }
+}
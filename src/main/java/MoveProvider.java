@@ -0,0 +1,14 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface MoveProvider {
+
+    // Start choosing a move for player. The position is copied before this returns, so
+    // the board can change while the move is being chosen. The future completes with
+    // the column on a background thread; cancel() it to stop thinking right away.
+    // progress (may be null) gets the best move so far, also on a background thread.
+    CompletableFuture<Integer> requestMove(Board board, int player, Consumer<SearchResult> progress);
+
+    // Stop thinking for good and release any threads
+    void shutdown();
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class OpeningBook {
+
+    // File layout (big-endian):
+    //   header: magic, version, rows, cols, connect, max ply, entry count (7 ints)
+    //   entries sorted by key: key (long), best column (byte), score (byte)
+    // A position and its mirror image share one entry, stored under the smaller key
+    // (see canonicalKey); the column is for that orientation.
+    public static final int MAGIC = 0x43344248; // "C4BH"
+    public static final int VERSION = 3;
+    public static final int HEADER_SIZE = 28;
+    public static final int ENTRY_SIZE = 10;
+
+    private MappedByteBuffer buffer;
+    private int rows;
+    private int cols;
+    private int connect;
+    private int maxPly;
+    private int count;
+
+    private OpeningBook(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book file");
+        }
+        rows = buffer.getInt(8);
+        cols = buffer.getInt(12);
+        connect = buffer.getInt(16);
+        maxPly = buffer.getInt(20);
+        count = buffer.getInt(24);
+        if (buffer.capacity() < HEADER_SIZE + (long) count * ENTRY_SIZE) {
+            throw new IOException("Opening book file is truncated");
+        }
+    }
+
+    // Map a book file read-only; pages are shared through the OS page cache
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Book for a board size, or null when there is no usable file
+    public static OpeningBook openIfPresent(Path file, int rows, int cols, int connect) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            OpeningBook book = open(file);
+            if (book.rows == rows && book.cols == cols && book.connect == connect) {
+                return book;
+            }
+            System.out.println("Opening book " + file + " is for a different board size, ignoring it");
+        } catch (IOException e) {
+            System.out.println("Could not load opening book: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Binary search for a position key; returns the entry index or -1
+    private int find(long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = buffer.getLong(HEADER_SIZE + mid * ENTRY_SIZE);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Book key of a position: current + mask or that of its mirror image, whichever is smaller
+    public static long canonicalKey(long current, long mask, int rows, int cols) {
+        long key = current + mask;
+        return Math.min(key, Board.mirrorBits(key, rows, cols));
+    }
+
+    // Best column for the player to move (current = their coins), or -1 if not in the book
+    public int getMove(long current, long mask) {
+        long key = current + mask;
+        long canonical = canonicalKey(current, mask, rows, cols);
+        int index = find(canonical);
+        if (index < 0) {
+            return -1;
+        }
+        int col = buffer.get(HEADER_SIZE + index * ENTRY_SIZE + 8);
+        return canonical == key ? col : cols - 1 - col;
+    }
+
+    // Score for the player to move (same scale as Solver.solve), or Integer.MIN_VALUE if missing
+    public int getScore(long current, long mask) {
+        int index = find(canonicalKey(current, mask, rows, cols));
+        return index < 0 ? Integer.MIN_VALUE : buffer.get(HEADER_SIZE + index * ENTRY_SIZE + 9);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getConnect() {
+        return connect;
+    }
+
+    public int getMaxPly() {
+        return maxPly;
+    }
+
+    public int size() {
+        return count;
+    }
+}
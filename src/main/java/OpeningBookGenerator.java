@@ -0,0 +1,156 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OpeningBookGenerator {
+
+    // Usage: OpeningBookGenerator <output file> [max ply] [threads] [rows] [cols] [connect]
+    // e.g. java -cp target/classes OpeningBookGenerator connect4-book.bin 8
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: OpeningBookGenerator <output file> [max ply] [threads] [rows] [cols] [connect]");
+            return;
+        }
+        Path output = Paths.get(args[0]);
+        int maxPly = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        int cols = args.length > 4 ? Integer.parseInt(args[4]) : 7;
+        int connect = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+
+        // Collect every distinct position up to maxPly plies where the game is still going,
+        // keeping one of each mirror pair
+        List<Board> positions = new ArrayList<>();
+        Board empty = new Board(rows, cols, connect);
+        collect(empty, 1, maxPly, new HashSet<>(), positions);
+        System.out.println(positions.size() + " positions up to ply " + maxPly);
+
+        // Solve them in parallel, one solver (and table) per worker thread
+        long[] keys = new long[positions.size()];
+        byte[] moves = new byte[positions.size()];
+        byte[] scores = new byte[positions.size()];
+        ThreadLocal<Solver> solvers = ThreadLocal.withInitial(() -> new Solver(rows, cols, connect, 22));
+        AtomicInteger done = new AtomicInteger();
+        long start = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < positions.size(); i++) {
+            int index = i;
+            pool.execute(() -> {
+                Board board = positions.get(index);
+                int player = board.getMoveCount() % 2 + 1;
+                long current = board.getPlayerBits(player);
+                long mask = current | board.getPlayerBits(3 - player);
+                keys[index] = OpeningBook.canonicalKey(current, mask, rows, cols);
+                int[] best = bestMove(solvers.get(), board, player);
+                // Store the column for the orientation the key belongs to
+                moves[index] = (byte) (keys[index] == current + mask ? best[0] : cols - 1 - best[0]);
+                scores[index] = (byte) best[1];
+
+                int finished = done.incrementAndGet();
+                if (finished % 1000 == 0) {
+                    System.out.printf("%d / %d solved (%.0f s)%n", finished, positions.size(),
+                            (System.nanoTime() - start) / 1e9);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+        write(output, rows, cols, connect, maxPly, keys, moves, scores);
+        System.out.printf("Wrote %d entries to %s in %.0f s%n", keys.length, output, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void collect(Board board, int player, int maxPly, Set<Long> seen, List<Board> positions) {
+        long current = board.getPlayerBits(player);
+        long key = OpeningBook.canonicalKey(current, current | board.getPlayerBits(3 - player),
+                board.getRows(), board.getCols());
+        if (!seen.add(key)) {
+            return; // Reached before through a different move order, or as a mirror image
+        }
+        positions.add(board);
+        if (board.getMoveCount() == maxPly) {
+            return;
+        }
+
+        for (int col = 0; col < board.getCols(); col++) {
+            if (!board.canPlay(col)) {
+                continue;
+            }
+            Board child = new Board(board);
+            child.dropCoin(col, player);
+            if (!child.checkWin(player) && !child.isFull()) {
+                collect(child, 3 - player, maxPly, seen, positions);
+            }
+        }
+    }
+
+    // {best column, exact score} for the player to move, center columns first on ties
+    private static int[] bestMove(Solver solver, Board board, int player) {
+        int size = board.getRows() * board.getCols();
+        int moves = board.getMoveCount();
+        int bestCol = -1;
+        int bestScore = Integer.MIN_VALUE;
+
+        for (int i = 0; i < board.getCols(); i++) {
+            int col = board.getCols() / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+            if (!board.canPlay(col)) {
+                continue;
+            }
+            Board child = new Board(board);
+            child.dropCoin(col, player);
+
+            int score;
+            if (child.checkWin(player)) {
+                score = (size + 1 - moves) / 2;
+            } else if (child.isFull()) {
+                score = 0;
+            } else {
+                long opponent = child.getPlayerBits(3 - player);
+                score = -solver.solve(opponent, opponent | child.getPlayerBits(player), moves + 1);
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestCol = col;
+            }
+        }
+        return new int[]{bestCol, bestScore};
+    }
+
+    private static void write(Path output, int rows, int cols, int connect, int maxPly,
+                              long[] keys, byte[] moves, byte[] scores) throws IOException {
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(connect);
+            out.writeInt(maxPly);
+            out.writeInt(keys.length);
+            for (int index : order) {
+                out.writeLong(keys[index]);
+                out.writeByte(moves[index]);
+                out.writeByte(scores[index]);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+public class ParallelSearch {
+
+    private TranspositionTable table;
+    private Solver[] workers; // workers[0] runs on the calling thread, the rest are helpers
+    private ExecutorService helperPool;
+
+    public ParallelSearch(int rows, int cols, int connect, int ttSizeBits, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        table = new TranspositionTable(ttSizeBits);
+        workers = new Solver[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Solver(rows, cols, connect, table);
+        }
+        if (threads > 1) {
+            helperPool = Executors.newFixedThreadPool(threads - 1, r -> {
+                Thread thread = new Thread(r, "connect4-search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // Best move for player on a Board within a depth and time budget
+    public SearchResult search(Board board, int player, int maxDepth, long timeLimitMillis) {
+        long current = board.getPlayerBits(player);
+        long mask = current | board.getPlayerBits(3 - player);
+        return search(current, mask, board.getMoveCount(), maxDepth, timeLimitMillis);
+    }
+
+    // Lazy SMP: all threads search the same root and share work through the table
+    public SearchResult search(long current, long mask, int moves, int maxDepth, long timeLimitMillis) {
+        return search(current, mask, moves, maxDepth, timeLimitMillis, null, () -> false);
+    }
+
+    // Same, reporting the main thread's best move after every finished depth to progress
+    // (may be null). Returns null without searching if cancelled is already true once the
+    // stop flags are reset, so a stop() racing with the start of the search is never lost.
+    public SearchResult search(long current, long mask, int moves, int maxDepth, long timeLimitMillis,
+                               Consumer<SearchResult> progress, BooleanSupplier cancelled) {
+        long start = System.nanoTime();
+        long deadline = timeLimitMillis > 0 ? start + timeLimitMillis * 1_000_000L : 0;
+        table.newSearch();
+        for (Solver worker : workers) {
+            worker.resetStop();
+        }
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+
+        List<Future<SearchResult>> helpers = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            int helperId = i;
+            helpers.add(helperPool.submit(() -> workers[helperId].search(current, mask, moves, maxDepth, deadline, helperId, null)));
+        }
+
+        SearchResult best = workers[0].search(current, mask, moves, maxDepth, deadline, 0, progress);
+        long nodes = best.getNodes();
+
+        // The main thread decides; a helper only wins if it finished a deeper iteration
+        for (int i = 1; i < workers.length; i++) {
+            workers[i].stop();
+        }
+        for (Future<SearchResult> future : helpers) {
+            SearchResult result = await(future);
+            nodes += result.getNodes();
+            if (result.getDepth() > best.getDepth()) {
+                best = result;
+            }
+        }
+
+        return new SearchResult(best.getColumn(), best.getScore(), best.getDepth(), best.isExact(),
+                nodes, System.nanoTime() - start);
+    }
+
+    // Share one solved position cache between all threads (null turns it off)
+    public void setSolvedCache(SolvedPositionCache cache) {
+        for (Solver worker : workers) {
+            worker.setSolvedCache(cache);
+        }
+    }
+
+    // Heuristic for positions at the search horizon, shared by all threads (null = none)
+    public void setEvaluator(Evaluator evaluator) {
+        for (Solver worker : workers) {
+            worker.setEvaluator(evaluator);
+        }
+    }
+
+    // Stop a running search from another thread
+    public void stop() {
+        for (Solver worker : workers) {
+            worker.stop();
+        }
+    }
+
+    public int getThreadCount() {
+        return workers.length;
+    }
+
+    public void shutdown() {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+        }
+    }
+
+    private SearchResult await(Future<SearchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for search helpers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        }
+    }
+}
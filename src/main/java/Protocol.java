@@ -0,0 +1,56 @@
+public class Protocol {
+
+    // Binary protocol between GameServer and its clients. Every message starts with
+    // a one-byte type and has a fixed size, so no length prefix is needed.
+
+    // Client to server
+    public static final byte JOIN = 1; // rows, cols, connect: wait for an opponent on that board
+    public static final byte MOVE = 2; // column
+    public static final byte LEAVE = 3; // give up the current match, the connection stays open
+
+    // Server to client
+    public static final byte MATCHED = 65; // your player (1 = Red moves first), rows, cols, connect
+    public static final byte MOVED = 66; // player, column (sent to both players, including the mover)
+    public static final byte GAME_OVER = 67; // result, see below
+    public static final byte ERROR = 68; // error code, see below
+
+    // GAME_OVER results
+    public static final int DRAW = 0; // 1 and 2 mean that player won
+    public static final int OPPONENT_LEFT = 3;
+
+    // ERROR codes
+    public static final int BAD_MESSAGE = 1;
+    public static final int BAD_BOARD = 2;
+    public static final int NOT_IN_MATCH = 3;
+    public static final int NOT_YOUR_TURN = 4;
+    public static final int ILLEGAL_MOVE = 5;
+    public static final int ALREADY_PLAYING = 6;
+
+    // Spectator feeds (FeedServer) send only server messages: MATCHED with player
+    // SPECTATOR starts a game (also after a restart or undo), then MOVED for every
+    // move and GAME_OVER when it ends
+    public static final int SPECTATOR = 0;
+
+    public static final int DEFAULT_PORT = 4004;
+    public static final int DEFAULT_FEED_PORT = 4005;
+
+    // Size of a message in bytes including its type, or -1 for an unknown type
+    public static int messageSize(byte type) {
+        switch (type) {
+            case JOIN: return 4;
+            case MOVE: return 2;
+            case LEAVE: return 1;
+            case MATCHED: return 5;
+            case MOVED: return 3;
+            case GAME_OVER: return 2;
+            case ERROR: return 2;
+            default: return -1;
+        }
+    }
+
+    // Boards are described with one byte per dimension
+    public static boolean isValidBoard(int rows, int cols, int connect) {
+        return rows >= 1 && rows <= 255 && cols >= 1 && cols <= 255
+                && connect >= 2 && connect <= Math.max(rows, cols);
+    }
+}
@@ -0,0 +1,20 @@
+import java.util.SplittableRandom;
+
+public class RandomStrategy implements Strategy {
+
+    @Override
+    public int chooseMove(Board board, int player, SplittableRandom random) {
+        // Pick a column, then walk right to the first one that is not full
+        int cols = board.getCols();
+        int col = random.nextInt(cols);
+        while (!board.canPlay(col)) {
+            col = (col + 1) % cols;
+        }
+        return col;
+    }
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+}
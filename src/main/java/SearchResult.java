@@ -0,0 +1,42 @@
+public class SearchResult {
+
+    private final int column;
+    private final int score; // positive = player to move wins, larger = sooner
+    private final int depth; // deepest fully completed iteration
+    private final boolean exact; // score is a proven game result
+    private final long nodes;
+    private final long elapsedNanos;
+
+    public SearchResult(int column, int score, int depth, boolean exact, long nodes, long elapsedNanos) {
+        this.column = column;
+        this.score = score;
+        this.depth = depth;
+        this.exact = exact;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.SplittableRandom;
+
+public class SearchStrategy implements Strategy {
+
+    private int depth;
+    private String evaluator; // evaluator name, see Evaluator.fromName
+    private TranspositionTable table;
+    private Solver solver; // created on first use, one instance per thread
+    private SolvedPositionCache solvedCache; // may be shared with other threads, null = none
+
+    public SearchStrategy(int depth) {
+        this(depth, "none");
+    }
+
+    public SearchStrategy(int depth, String evaluator) {
+        this.depth = depth;
+        this.evaluator = evaluator;
+    }
+
+    public void setSolvedCache(SolvedPositionCache cache) {
+        solvedCache = cache;
+    }
+
+    @Override
+    public int chooseMove(Board board, int player, SplittableRandom random) {
+        if (solver == null) {
+            table = new TranspositionTable(16);
+            solver = new Solver(board.getRows(), board.getCols(), board.getConnect(), table);
+            solver.setSolvedCache(solvedCache);
+            solver.setEvaluator(Evaluator.fromName(evaluator, board.getRows(), board.getCols(), board.getConnect()));
+        }
+        // A fresh table per move keeps the choice a pure function of the position,
+        // so seeded games replay identically whatever thread runs them
+        table.clear();
+        return solver.search(board, player, depth, 0).getColumn();
+    }
+
+    @Override
+    public String getName() {
+        return evaluator.equals("none") ? "search:" + depth : "search:" + depth + ":" + evaluator;
+    }
+}
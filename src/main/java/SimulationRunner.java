@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class SimulationRunner {
+
+    // Games handed to a worker at a time, keeps scheduling overhead out of the loop
+    private static final int CHUNK_SIZE = 256;
+
+    private Supplier<Strategy> player1;
+    private Supplier<Strategy> player2;
+    private int randomOpening; // random plies played before the strategies take over
+    private long seed;
+    private int rows;
+    private int cols;
+    private int connect;
+
+    private LongAdder player1Wins = new LongAdder();
+    private LongAdder player2Wins = new LongAdder();
+    private LongAdder draws = new LongAdder();
+    private AtomicLongArray lengths; // lengths[n] = games that ended after n moves
+    private GameArchive.Writer archive; // every game is saved here when set
+    private SolvedPositionCache solvedCache; // shared by the search strategies when set
+
+    public SimulationRunner(Supplier<Strategy> player1, Supplier<Strategy> player2, int randomOpening, long seed) {
+        this(player1, player2, randomOpening, seed, 6, 7, 4);
+    }
+
+    public SimulationRunner(Supplier<Strategy> player1, Supplier<Strategy> player2, int randomOpening, long seed,
+                            int rows, int cols, int connect) {
+        this.player1 = player1;
+        this.player2 = player2;
+        this.randomOpening = randomOpening;
+        this.seed = seed;
+        this.rows = rows;
+        this.cols = cols;
+        this.connect = connect;
+        this.lengths = new AtomicLongArray(rows * cols + 1);
+    }
+
+    // Usage: SimulationRunner [--games N] [--threads T] [--seed S] [--p1 SPEC] [--p2 SPEC]
+    //                         [--opening PLIES] [--replay GAME] [--rows R] [--cols C] [--connect N]
+    //                         [--archive FILE] [--cache FILE]
+    // SPEC is random, heuristic, search:DEPTH[:EVALUATOR] or mcts:ROLLOUTS (EVALUATOR: none or threat). --replay prints the moves of one game,
+    // --archive saves every game in game order (see GameArchive). --cache lets search strategies
+    // reuse solved endgames across games and runs (see SolvedPositionCache); their moves then
+    // depend on what the cache already holds, so games are no longer reproducible from the seed.
+    public static void main(String[] args) throws InterruptedException, IOException {
+        long games = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        String p1 = "heuristic";
+        String p2 = "random";
+        int opening = 0;
+        long replay = -1;
+        int rows = 6;
+        int cols = 7;
+        int connect = 4;
+        String archiveFile = null;
+        String cacheFile = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--games": games = Long.parseLong(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--p1": p1 = value; break;
+                case "--p2": p2 = value; break;
+                case "--opening": opening = Integer.parseInt(value); break;
+                case "--replay": replay = Long.parseLong(value); break;
+                case "--rows": rows = Integer.parseInt(value); break;
+                case "--cols": cols = Integer.parseInt(value); break;
+                case "--connect": connect = Integer.parseInt(value); break;
+                case "--archive": archiveFile = value; break;
+                case "--cache": cacheFile = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SimulationRunner runner = new SimulationRunner(Strategy.fromSpec(p1), Strategy.fromSpec(p2), opening, seed,
+                rows, cols, connect);
+        if (replay >= 0) {
+            runner.printGame(replay);
+            return;
+        }
+
+        if (archiveFile != null) {
+            runner.archive = GameArchive.createWriter(Paths.get(archiveFile), rows, cols, connect);
+        }
+        if (cacheFile != null) {
+            runner.solvedCache = SolvedPositionCache.open(Paths.get(cacheFile), rows, cols, connect, 20);
+        }
+        long start = System.nanoTime();
+        try {
+            runner.run(games, threads);
+        } finally {
+            if (runner.archive != null) {
+                runner.archive.close();
+            }
+            if (runner.solvedCache != null) {
+                runner.solvedCache.save();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        runner.printSummary(p1, p2, games, threads, seconds);
+        if (runner.solvedCache != null) {
+            System.out.println(runner.solvedCache.describeStats());
+        }
+    }
+
+    // Play games [0, games) on a fixed pool of threads
+    public void run(long games, int threads) throws InterruptedException, IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<Strategy[]> strategies = ThreadLocal.withInitial(
+                () -> new Strategy[]{null, newStrategy(player1), newStrategy(player2)});
+        ThreadLocal<Board> boards = ThreadLocal.withInitial(() -> new Board(rows, cols, connect));
+
+        boolean nibbles = GameRecord.usesNibbles(cols);
+        int maxRecord = GameRecord.maxEncodedSize(rows * cols);
+        List<Future<ByteBuffer>> chunks = new ArrayList<>();
+        for (long first = 0; first < games; first += CHUNK_SIZE) {
+            long from = first;
+            long to = Math.min(games, first + CHUNK_SIZE);
+            chunks.add(pool.submit(() -> {
+                Board board = boards.get();
+                Strategy[] players = strategies.get();
+                // Games are encoded per chunk and written in chunk order, so the archive is reproducible
+                ByteBuffer encoded = archive != null ? ByteBuffer.allocate((int) (to - from) * maxRecord) : null;
+                GameRecord gameRecord = new GameRecord();
+                for (long game = from; game < to; game++) {
+                    record(playGame(game, board, players, null));
+                    if (encoded != null) {
+                        gameRecord.set(board);
+                        gameRecord.write(encoded, nibbles);
+                    }
+                }
+                return encoded;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+                ByteBuffer encoded = chunks.get(i).get();
+                chunks.set(i, null); // Let the encoded games be collected once written
+                if (encoded != null) {
+                    encoded.flip();
+                    archive.writeEncoded(encoded, (int) Math.min(CHUNK_SIZE, games - (long) i * CHUNK_SIZE));
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Play one game; returns winner * 1000000 + length (winner 0 = draw). Moves are
+    // appended to history when it is not null.
+    private int playGame(long game, Board board, Strategy[] players, StringBuilder history) {
+        return playGame(board, players, randomOpening, new SplittableRandom(gameSeed(game)), history);
+    }
+
+    // Play one game from an empty board with players[1] as Red and players[2] as Yellow,
+    // starting with randomOpening random plies; result as above
+    public static int playGame(Board board, Strategy[] players, int randomOpening, SplittableRandom random,
+                               StringBuilder history) {
+        board.reset();
+        int player = 1;
+        while (true) {
+            int col;
+            if (board.getMoveCount() < randomOpening) {
+                col = random.nextInt(board.getCols());
+                while (!board.canPlay(col)) {
+                    col = (col + 1) % board.getCols();
+                }
+            } else {
+                col = players[player].chooseMove(board, player, random);
+            }
+            board.dropCoin(col, player);
+            if (history != null) {
+                history.append(col + 1).append(' ');
+            }
+
+            if (board.checkWin(player)) {
+                return player * 1_000_000 + board.getMoveCount();
+            }
+            if (board.isFull()) {
+                return board.getMoveCount();
+            }
+            player = 3 - player;
+        }
+    }
+
+    // A strategy for one worker thread, connected to the solved position cache if there is one
+    private Strategy newStrategy(Supplier<Strategy> factory) {
+        Strategy strategy = factory.get();
+        if (solvedCache != null && strategy instanceof SearchStrategy) {
+            ((SearchStrategy) strategy).setSolvedCache(solvedCache);
+        }
+        return strategy;
+    }
+
+    // Every game gets its own seed, so any game can be replayed on its own
+    private long gameSeed(long game) {
+        return mixSeed(seed + game * 0x9E3779B97F4A7C15L);
+    }
+
+    // SplitMix64 finalizer: spreads nearby seeds over unrelated random streams
+    public static long mixSeed(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void record(int result) {
+        int winner = result / 1_000_000;
+        if (winner == 1) {
+            player1Wins.increment();
+        } else if (winner == 2) {
+            player2Wins.increment();
+        } else {
+            draws.increment();
+        }
+        lengths.incrementAndGet(result % 1_000_000);
+    }
+
+    public void printGame(long game) {
+        StringBuilder history = new StringBuilder();
+        int result = playGame(game, new Board(rows, cols, connect), new Strategy[]{null, player1.get(), player2.get()}, history);
+        int winner = result / 1_000_000;
+        System.out.println("Game " + game + ": " + history);
+        System.out.println(winner == 0 ? "Draw" : "Player " + winner + " wins after " + result % 1_000_000 + " moves");
+    }
+
+    public void printSummary(String p1, String p2, long games, int threads, double seconds) {
+        System.out.printf("%d games in %.2f s (%.0f games/s) on %d threads, seed %d%n",
+                games, seconds, games / seconds, threads, seed);
+        System.out.printf("%-30s %10d  %6.2f%%%n", "Player 1 (" + p1 + ") wins:", player1Wins.sum(), 100.0 * player1Wins.sum() / games);
+        System.out.printf("%-30s %10d  %6.2f%%%n", "Player 2 (" + p2 + ") wins:", player2Wins.sum(), 100.0 * player2Wins.sum() / games);
+        System.out.printf("%-30s %10d  %6.2f%%%n", "Draws:", draws.sum(), 100.0 * draws.sum() / games);
+
+        System.out.println("Game length histogram:");
+        long max = 1;
+        for (int i = 0; i < lengths.length(); i++) {
+            max = Math.max(max, lengths.get(i));
+        }
+        for (int i = 0; i < lengths.length(); i++) {
+            long count = lengths.get(i);
+            if (count > 0) {
+                System.out.printf("  %4d %10d %s%n", i, count, "#".repeat((int) (50 * count / max)));
+            }
+        }
+    }
+
+    public long getPlayer1Wins() {
+        return player1Wins.sum();
+    }
+
+    public long getPlayer2Wins() {
+        return player2Wins.sum();
+    }
+
+    public long getDraws() {
+        return draws.sum();
+    }
+}
@@ -0,0 +1,431 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SolvedPositionCache {
+
+    // Exact results of solved positions, keyed like the opening book (canonical
+    // current + mask, see OpeningBook.canonicalKey), so a position and its mirror
+    // image share an entry and the move is stored for the canonical orientation.
+    //
+    // Two tiers: a bounded in-memory table, 8-way set associative with CLOCK eviction
+    // in every set, and a sorted spill file on disk that is memory-mapped and binary
+    // searched. Evicted entries collect in a small hash table (still found by get()) and
+    // are merged into the file when it fills up and on save(), so the file can be
+    // reloaded after a restart.
+    //
+    // Spill file layout (big-endian): magic, version, rows, cols, connect, entry count
+    // (6 ints), then entries sorted by key: key (long), move (byte), score (byte).
+    public static final int MAGIC = 0x43345343; // "C4SC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int ENTRY_SIZE = 10;
+
+    // Returned by get() when the position is not cached
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    public static final int NO_MOVE = TranspositionTable.NO_MOVE;
+
+    private static final int WAYS = 8;
+    private static final int LOCK_STRIPES = 64;
+    private static final int SPILL_BATCH = 1 << 16;
+
+    // Memory tier. data: valid (bit 14) | score (8 bits) << 6 | move (6 bits)
+    private static final int VALID = 1 << 14;
+    private final long[] keys;
+    private final short[] data;
+    private final boolean[] referenced;
+    private final byte[] hands; // CLOCK hand of every set
+    private final int setShift;
+    private final Object[] locks;
+
+    // Disk tier
+    private final Path file;
+    private final int rows;
+    private final int cols;
+    private final int connect;
+    private volatile MappedByteBuffer disk; // null without a spill file; its header holds the entry count
+
+    // Evicted entries waiting to be merged into the spill file, open addressing at most half full
+    private final long[] spillKeys = new long[2 * SPILL_BATCH];
+    private final short[] spillData = new short[2 * SPILL_BATCH];
+    private int spillCount;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder(); // found in the spill buffer or file
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // In-memory only cache of 2^sizeBits entries (about 11 bytes each)
+    public SolvedPositionCache(int rows, int cols, int connect, int sizeBits) {
+        this(null, rows, cols, connect, sizeBits);
+    }
+
+    private SolvedPositionCache(Path file, int rows, int cols, int connect, int sizeBits) {
+        if (sizeBits < 4 || sizeBits > 30) {
+            throw new IllegalArgumentException("sizeBits must be between 4 and 30: " + sizeBits);
+        }
+        this.file = file;
+        this.rows = rows;
+        this.cols = cols;
+        this.connect = connect;
+        keys = new long[1 << sizeBits];
+        data = new short[1 << sizeBits];
+        referenced = new boolean[1 << sizeBits];
+        hands = new byte[1 << (sizeBits - 3)];
+        setShift = 64 - (sizeBits - 3);
+        locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Cache backed by a spill file, loading what an earlier run saved there. A file for
+    // another board size, or one that cannot be read, is replaced on the next save.
+    public static SolvedPositionCache open(Path file, int rows, int cols, int connect, int sizeBits) {
+        SolvedPositionCache cache = new SolvedPositionCache(file, rows, cols, connect, sizeBits);
+        if (Files.isRegularFile(file)) {
+            try {
+                cache.mapDisk();
+            } catch (IOException e) {
+                System.out.println("Ignoring solved position cache " + file + ": " + e.getMessage());
+            }
+        }
+        return cache;
+    }
+
+    private void mapDisk() throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a solved position cache");
+        }
+        if (buffer.getInt(8) != rows || buffer.getInt(12) != cols || buffer.getInt(16) != connect) {
+            throw new IOException("Cache is for a different board size");
+        }
+        int count = buffer.getInt(20);
+        if (buffer.capacity() < HEADER_SIZE + (long) count * ENTRY_SIZE) {
+            throw new IOException("Cache file is truncated");
+        }
+        disk = buffer;
+    }
+
+    // Cached entry for a canonical key, or MISSING; decode it with score() and move()
+    public int get(long key) {
+        int set = set(key);
+        synchronized (locks[set & (LOCK_STRIPES - 1)]) {
+            int base = set * WAYS;
+            for (int way = base; way < base + WAYS; way++) {
+                if (data[way] != 0 && keys[way] == key) {
+                    referenced[way] = true;
+                    memoryHits.increment();
+                    return data[way];
+                }
+            }
+        }
+
+        int entry = findSpilled(key);
+        if (entry == MISSING) {
+            entry = findOnDisk(key);
+        }
+        if (entry == MISSING) {
+            misses.increment();
+            return MISSING;
+        }
+        diskHits.increment();
+        insert(key, (short) entry); // Hot again: keep it in memory
+        return entry;
+    }
+
+    // Remember the exact score (and best move or NO_MOVE) of a position under its canonical key.
+    // NO_MOVE never replaces a move already stored for the key, which search() relies on.
+    public void put(long key, int score, int move) {
+        stores.increment();
+        insert(key, pack(score, move));
+    }
+
+    public static int score(int entry) {
+        return (byte) (entry >>> 6);
+    }
+
+    public static int move(int entry) {
+        return entry & 0x3F;
+    }
+
+    private static short pack(int score, int move) {
+        return (short) (VALID | (score & 0xFF) << 6 | (move & 0x3F));
+    }
+
+    private void insert(long key, short entry) {
+        long victimKey = 0;
+        short victim = 0;
+        int set = set(key);
+        synchronized (locks[set & (LOCK_STRIPES - 1)]) {
+            int base = set * WAYS;
+            int free = -1;
+            for (int way = base; way < base + WAYS; way++) {
+                if (data[way] == 0) {
+                    free = free < 0 ? way : free;
+                } else if (keys[way] == key) {
+                    // Same exact score either way; keep the move if only the old entry has one
+                    if (move(entry) != NO_MOVE || move(data[way]) == NO_MOVE) {
+                        data[way] = entry;
+                    }
+                    referenced[way] = true;
+                    return;
+                }
+            }
+            if (free < 0) {
+                // CLOCK: skip (and clear) recently used ways, evict the first one that was not
+                int hand = hands[set];
+                while (referenced[base + hand]) {
+                    referenced[base + hand] = false;
+                    hand = (hand + 1) % WAYS;
+                }
+                free = base + hand;
+                hands[set] = (byte) ((hand + 1) % WAYS);
+                victimKey = keys[free];
+                victim = data[free];
+            }
+            keys[free] = key;
+            data[free] = entry;
+            referenced[free] = false;
+        }
+        if (victim != 0) {
+            evictions.increment();
+            spill(victimKey, victim);
+        }
+    }
+
+    private int set(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> setShift);
+    }
+
+    // Binary search in the spill file
+    private int findOnDisk(long key) {
+        MappedByteBuffer buffer = disk;
+        if (buffer == null) {
+            return MISSING;
+        }
+        int low = 0;
+        int high = buffer.getInt(20) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = HEADER_SIZE + mid * ENTRY_SIZE;
+            long midKey = buffer.getLong(offset);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return pack(buffer.get(offset + 9), buffer.get(offset + 8)) & 0xFFFF;
+            }
+        }
+        return MISSING;
+    }
+
+    private int spillSlot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (spillKeys.length - 1);
+    }
+
+    private int findSpilled(long key) {
+        if (file == null) {
+            return MISSING;
+        }
+        synchronized (spillKeys) {
+            for (int slot = spillSlot(key); spillData[slot] != 0; slot = (slot + 1) & (spillKeys.length - 1)) {
+                if (spillKeys[slot] == key) {
+                    return spillData[slot];
+                }
+            }
+        }
+        return MISSING;
+    }
+
+    private void spill(long key, short entry) {
+        if (file == null) {
+            return; // Memory only: evicted entries are gone
+        }
+        synchronized (spillKeys) {
+            int slot = spillSlot(key);
+            while (spillData[slot] != 0 && spillKeys[slot] != key) {
+                slot = (slot + 1) & (spillKeys.length - 1);
+            }
+            if (spillData[slot] == 0) {
+                spillCount++;
+            }
+            spillKeys[slot] = key;
+            spillData[slot] = entry;
+            if (spillCount == SPILL_BATCH) {
+                try {
+                    merge(false);
+                } catch (IOException e) {
+                    System.out.println("Could not write solved position cache: " + e.getMessage());
+                    clearSpilled();
+                }
+            }
+        }
+    }
+
+    private void clearSpilled() {
+        Arrays.fill(spillData, (short) 0);
+        spillCount = 0;
+    }
+
+    // Write everything in memory to the spill file so the next run can load it
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        synchronized (spillKeys) {
+            merge(true);
+        }
+    }
+
+    // Merge the spill buffer (and the memory tier when withMemory) into a new sorted
+    // file, which replaces the old one atomically. Callers hold the spillKeys lock.
+    private void merge(boolean withMemory) throws IOException {
+        long[] newKeys = new long[spillCount + (withMemory ? keys.length : 0)];
+        short[] newData = new short[newKeys.length];
+        int count = 0;
+        for (int slot = 0; slot < spillKeys.length; slot++) {
+            if (spillData[slot] != 0) {
+                newKeys[count] = spillKeys[slot];
+                newData[count] = spillData[slot];
+                count++;
+            }
+        }
+        if (withMemory) {
+            for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+                synchronized (locks[stripe]) {
+                    for (int set = stripe; set < hands.length; set += LOCK_STRIPES) {
+                        for (int way = set * WAYS; way < set * WAYS + WAYS; way++) {
+                            if (data[way] != 0) {
+                                newKeys[count] = keys[way];
+                                newData[count] = data[way];
+                                count++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        // Memory entries come last and are newer: sort stably so the last of equal keys can win
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(newKeys[a], newKeys[b]));
+
+        MappedByteBuffer old = disk;
+        int oldCount = old == null ? 0 : old.getInt(20);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(connect);
+            out.writeInt(0); // Entry count, filled in below
+            int next = 0;
+            int oldIndex = 0;
+            while (next < count || oldIndex < oldCount) {
+                long oldKey = oldIndex < oldCount ? old.getLong(HEADER_SIZE + oldIndex * ENTRY_SIZE) : Long.MAX_VALUE;
+                long newKey = next < count ? newKeys[order[next]] : Long.MAX_VALUE;
+                if (next < count && (oldIndex == oldCount || newKey <= oldKey)) {
+                    while (next + 1 < count && newKeys[order[next + 1]] == newKey) {
+                        next++;
+                    }
+                    short entry = newData[order[next++]];
+                    out.writeLong(newKey);
+                    out.writeByte(move(entry));
+                    out.writeByte(score(entry));
+                    if (newKey == oldKey) {
+                        oldIndex++; // Replaced by the newer entry
+                    }
+                } else {
+                    int offset = HEADER_SIZE + oldIndex * ENTRY_SIZE;
+                    out.writeLong(oldKey);
+                    out.writeByte(old.get(offset + 8));
+                    out.writeByte(old.get(offset + 9));
+                    oldIndex++;
+                }
+                written++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, written), 20);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        mapDisk();
+        clearSpilled();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Entries in the spill file as of the last merge
+    public int getDiskSize() {
+        MappedByteBuffer buffer = disk;
+        return buffer == null ? 0 : buffer.getInt(20);
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    // One line for logs, e.g. to size the cache from a simulation run
+    public String describeStats() {
+        long hits = memoryHits.sum() + diskHits.sum();
+        long lookups = hits + misses.sum();
+        return String.format(Locale.ROOT,
+                "solved cache: %d lookups, %.1f%% hits (%d memory, %d disk), %d stores, %d evictions, %d on disk",
+                lookups, lookups == 0 ? 0.0 : 100.0 * hits / lookups, memoryHits.sum(), diskHits.sum(),
+                stores.sum(), evictions.sum(), getDiskSize());
+    }
+
+    // Usage: SolvedPositionCache <file> - prints what a spill file holds
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: SolvedPositionCache <file>");
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a solved position cache");
+            }
+            System.out.printf("%s: %dx%d, connect %d, %d positions%n", path, buffer.getInt(8), buffer.getInt(12),
+                    buffer.getInt(16), buffer.getInt(20));
+        }
+    }
+}
@@ -0,0 +1,519 @@
+import java.util.function.Consumer;
+
+public class Solver {
+
+    // Internally scores are game scores times SCALE, which leaves room for evaluator
+    // scores (always less than one game point) below the smallest proven win or loss
+    private static final int SCALE = 64;
+
+    private final int width;
+    private final int height;
+    private final int connect; // coins in a row needed to win
+    private final int stride; // bits per column, same layout as Board
+    private final int size; // number of cells
+    private final long bottomMask;
+    private final long boardMask;
+    private final int[] columnOrder; // center columns first
+    private final int[] shifts; // vertical, both diagonals, horizontal
+
+    // May be shared with other solvers searching the same position in parallel
+    private final TranspositionTable table;
+
+    // Move ordering buffers, one row per ply so the search never allocates
+    private final int[][] moveBuffer;
+    private final int[][] orderBuffer;
+
+    private long nodes;
+    // Only counted with EngineMetrics.ENABLED, reported once per search
+    private long ttProbes;
+    private long ttHits;
+    private long expanded;
+    private long children;
+    private long deadline; // System.nanoTime() limit, 0 = no limit
+    private boolean aborted;
+    private volatile boolean stopRequested;
+    private SolvedPositionCache solved; // exact results kept across searches, may be null
+    private Evaluator evaluator; // scores positions at the horizon, null = unknown counts as a draw
+
+    public Solver(int rows, int cols, int connect, int ttSizeBits) {
+        this(rows, cols, connect, new TranspositionTable(ttSizeBits));
+    }
+
+    public Solver(int rows, int cols, int connect, TranspositionTable table) {
+        if ((rows + 1) * cols > 64) {
+            throw new IllegalArgumentException("Board " + rows + "x" + cols + " does not fit in a 64-bit bitboard");
+        }
+        width = cols;
+        height = rows;
+        this.connect = connect;
+        stride = rows + 1;
+        size = rows * cols;
+        shifts = new int[]{1, stride - 1, stride, stride + 1};
+
+        long bottom = 0;
+        for (int col = 0; col < cols; col++) {
+            bottom |= 1L << (col * stride);
+        }
+        bottomMask = bottom;
+        boardMask = bottom * ((1L << rows) - 1);
+
+        columnOrder = new int[cols];
+        for (int i = 0; i < cols; i++) {
+            columnOrder[i] = cols / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        }
+
+        this.table = table;
+
+        moveBuffer = new int[size + 1][cols];
+        orderBuffer = new int[size + 1][cols];
+    }
+
+    // Look up and remember exact results in a cache (may be shared between solvers); null turns it off
+    public void setSolvedCache(SolvedPositionCache cache) {
+        solved = cache;
+    }
+
+    // Heuristic for depth-limited searches (may be shared between solvers); set it before
+    // searching, the transposition table holds its scores
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    // Best move for player on a Board within a depth and time budget
+    public SearchResult search(Board board, int player, int maxDepth, long timeLimitMillis) {
+        long current = board.getPlayerBits(player);
+        long mask = current | board.getPlayerBits(3 - player);
+        return search(current, mask, board.getMoveCount(), maxDepth, timeLimitMillis);
+    }
+
+    // Iterative deepening search from the point of view of the player to move
+    public SearchResult search(long current, long mask, int moves, int maxDepth, long timeLimitMillis) {
+        long start = System.nanoTime();
+        table.newSearch();
+        stopRequested = false;
+        return search(current, mask, moves, maxDepth, timeLimitMillis > 0 ? start + timeLimitMillis * 1_000_000L : 0, 0, null);
+    }
+
+    // Lazy SMP worker: every thread searches the whole tree through the shared table.
+    // Helpers (helperId > 0) skew their start depth and root order so they fill the
+    // table with different subtrees than the main thread. progress (may be null) gets
+    // the best move after every finished depth.
+    SearchResult search(long current, long mask, int moves, int maxDepth, long deadlineNanos, int helperId,
+                        Consumer<SearchResult> progress) {
+        long start = System.nanoTime();
+        nodes = 0;
+        resetCounters();
+        aborted = false;
+        deadline = deadlineNanos;
+
+        // Take an immediate win
+        for (int col : columnOrder) {
+            if (canPlay(mask, col) && isWinningMove(current, mask, col)) {
+                return new SearchResult(col, (size + 1 - moves) / 2, 1, true, 1, System.nanoTime() - start);
+            }
+        }
+
+        long next = possibleNonLosingMoves(current, mask);
+        int remaining = size - moves;
+        int[] rootMoves = new int[width];
+        int rootCount = 0;
+        for (int col : columnOrder) {
+            if ((next & columnMask(col)) != 0) {
+                rootMoves[rootCount++] = col;
+            }
+        }
+
+        // Every move loses: play anything legal
+        if (rootCount == 0) {
+            for (int col : columnOrder) {
+                if (canPlay(mask, col)) {
+                    return new SearchResult(col, -remaining / 2, 1, true, 1, System.nanoTime() - start);
+                }
+            }
+            return new SearchResult(-1, 0, 0, true, 0, System.nanoTime() - start);
+        }
+
+        // A position solved before is just a lookup
+        long key = OpeningBook.canonicalKey(current, mask, height, width);
+        if (solved != null) {
+            int entry = solved.get(key);
+            if (entry != SolvedPositionCache.MISSING && SolvedPositionCache.move(entry) != SolvedPositionCache.NO_MOVE) {
+                int col = SolvedPositionCache.move(entry);
+                return new SearchResult(key == current + mask ? col : width - 1 - col, SolvedPositionCache.score(entry),
+                        remaining, true, 0, System.nanoTime() - start);
+            }
+        }
+
+        if (helperId > 0 && rootCount > 1) {
+            rotate(rootMoves, rootCount, helperId % rootCount);
+        }
+
+        int bestCol = rootMoves[0];
+        int bestScore = 0;
+        int completedDepth = 0;
+        boolean exact = false;
+
+        for (int depth = 1 + helperId % 2; depth <= Math.min(maxDepth, remaining); depth++) {
+            int alpha = -size * SCALE;
+            int iterationBest = rootMoves[0];
+            for (int i = 0; i < rootCount; i++) {
+                int col = rootMoves[i];
+                long move = (mask + bottomMask) & columnMask(col);
+                int score = -negamax(current ^ mask, mask | move, moves + 1, -size * SCALE, -alpha, depth - 1);
+                if (aborted) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = col;
+                }
+            }
+            if (aborted) {
+                break;
+            }
+
+            bestCol = iterationBest;
+            bestScore = alpha / SCALE; // Evaluator scores round to 0
+            completedDepth = depth;
+
+            // Search the best move first in the next iteration
+            for (int i = 0; i < rootCount; i++) {
+                if (rootMoves[i] == bestCol) {
+                    System.arraycopy(rootMoves, 0, rootMoves, 1, i);
+                    rootMoves[0] = bestCol;
+                    break;
+                }
+            }
+
+            // Only a search down to the last cell is a proven result
+            if (depth == remaining) {
+                exact = true;
+            }
+
+            if (progress != null) {
+                progress.accept(new SearchResult(bestCol, bestScore, depth, exact, nodes, System.nanoTime() - start));
+            }
+        }
+
+        if (exact && solved != null && helperId == 0) {
+            solved.put(key, bestScore, key == current + mask ? bestCol : width - 1 - bestCol);
+        }
+        long elapsed = System.nanoTime() - start;
+        reportCounters(elapsed);
+        return new SearchResult(bestCol, bestScore, completedDepth, exact, nodes, elapsed);
+    }
+
+    // Ask a running search to return as soon as possible (safe from any thread)
+    public void stop() {
+        stopRequested = true;
+    }
+
+    // Clear a previous stop() before handing this solver a new search
+    void resetStop() {
+        stopRequested = false;
+    }
+
+    private void rotate(int[] values, int count, int distance) {
+        int[] copy = values.clone();
+        for (int i = 0; i < count; i++) {
+            values[i] = copy[(i + distance) % count];
+        }
+    }
+
+    // Exact score of a position using null-window searches (positive = player to move wins)
+    public int solve(long current, long mask, int moves) {
+        long start = System.nanoTime();
+        nodes = 0;
+        resetCounters();
+        aborted = false;
+        stopRequested = false;
+        deadline = 0;
+        table.newSearch();
+
+        if (canWinNext(current, mask)) {
+            return (size + 1 - moves) / 2;
+        }
+        long key = OpeningBook.canonicalKey(current, mask, height, width);
+        if (solved != null) {
+            int entry = solved.get(key);
+            if (entry != SolvedPositionCache.MISSING) {
+                return SolvedPositionCache.score(entry);
+            }
+        }
+
+        int min = -(size - moves) / 2;
+        int max = (size + 1 - moves) / 2;
+        while (min < max) {
+            int med = min + (max - min) / 2;
+            if (med <= 0 && min / 2 < med) {
+                med = min / 2;
+            } else if (med >= 0 && max / 2 > med) {
+                med = max / 2;
+            }
+            // No horizon is reached, so every score is a whole number of game points
+            int result = negamax(current, mask, moves, med * SCALE, med * SCALE + 1, size - moves) / SCALE;
+            if (result <= med) {
+                max = result;
+            } else {
+                min = result;
+            }
+        }
+        if (solved != null) {
+            solved.put(key, min, SolvedPositionCache.NO_MOVE);
+        }
+        reportCounters(System.nanoTime() - start);
+        return min;
+    }
+
+    private void resetCounters() {
+        if (EngineMetrics.ENABLED) {
+            ttProbes = 0;
+            ttHits = 0;
+            expanded = 0;
+            children = 0;
+        }
+    }
+
+    private void reportCounters(long elapsedNanos) {
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.recordSearch(nodes, elapsedNanos, ttProbes, ttHits, expanded, children);
+        }
+    }
+
+    private int negamax(long current, long mask, int moves, int alpha, int beta, int depth) {
+        nodes++;
+        if ((nodes & 4095) == 0 && (stopRequested || (deadline != 0 && System.nanoTime() > deadline))) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        long next = possibleNonLosingMoves(current, mask);
+        if (next == 0) {
+            return -(size - moves) / 2 * SCALE; // Opponent wins next move whatever we do
+        }
+        if (moves >= size - 2) {
+            return 0; // Neither side can win any more
+        }
+
+        // Scores are bounded by how fast either side could still win
+        int min = -(size - 2 - moves) / 2 * SCALE;
+        if (alpha < min) {
+            alpha = min;
+            if (alpha >= beta) {
+                return alpha;
+            }
+        }
+        int max = (size - 1 - moves) / 2 * SCALE;
+        if (beta > max) {
+            beta = max;
+            if (alpha >= beta) {
+                return beta;
+            }
+        }
+
+        if (depth > size - moves) {
+            depth = size - moves;
+        }
+        int alphaOrig = alpha;
+
+        // A position and its mirror image share one entry, stored under the smaller key
+        long key = current + mask;
+        long mirrorKey = Board.mirrorBits(key, height, width);
+        boolean mirrored = mirrorKey < key;
+        if (mirrored) {
+            key = mirrorKey;
+        }
+        int hashMove = TranspositionTable.NO_MOVE;
+        long entry = table.probe(key);
+        if (EngineMetrics.ENABLED) {
+            ttProbes++;
+            if (entry != 0) {
+                ttHits++;
+            }
+        }
+        if (entry != 0) {
+            int value = TranspositionTable.value(entry);
+            int flag = TranspositionTable.flag(entry);
+            hashMove = TranspositionTable.move(entry);
+            if (mirrored && hashMove != TranspositionTable.NO_MOVE) {
+                hashMove = width - 1 - hashMove;
+            }
+            if (TranspositionTable.depth(entry) >= depth) {
+                if (flag == TranspositionTable.EXACT) {
+                    return value;
+                } else if (flag == TranspositionTable.LOWER && value > alpha) {
+                    alpha = value;
+                } else if (flag == TranspositionTable.UPPER && value < beta) {
+                    beta = value;
+                }
+                if (alpha >= beta) {
+                    return value;
+                }
+            }
+        }
+
+        if (depth == 0) {
+            // Horizon reached: unknown, a draw unless the evaluator leans one way
+            if (evaluator == null) {
+                return 0;
+            }
+            int value = Math.max(-(SCALE - 1), Math.min(SCALE - 1, evaluator.evaluate(current, mask, moves)));
+            return Math.max(min, Math.min(max, value));
+        }
+
+        int count = orderMoves(current, mask, next, moves, hashMove);
+        if (EngineMetrics.ENABLED) {
+            expanded++;
+        }
+        int[] order = moveBuffer[moves];
+        int best = -size * SCALE;
+        int bestMove = TranspositionTable.NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            int col = order[i];
+            long move = next & columnMask(col);
+            int score = -negamax(current ^ mask, mask | move, moves + 1, -beta, -alpha, depth - 1);
+            if (EngineMetrics.ENABLED) {
+                children++;
+            }
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = col;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        int flag = best <= alphaOrig ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        if (mirrored && bestMove != TranspositionTable.NO_MOVE) {
+            bestMove = width - 1 - bestMove;
+        }
+        table.store(key, best, depth, flag, bestMove);
+        return best;
+    }
+
+    // Fill moveBuffer[moves] with the playable columns, most promising first
+    private int orderMoves(long current, long mask, long next, int moves, int hashMove) {
+        int[] order = moveBuffer[moves];
+        int[] scores = orderBuffer[moves];
+        int count = 0;
+        for (int col : columnOrder) {
+            long move = next & columnMask(col);
+            if (move == 0) {
+                continue;
+            }
+            int score = Long.bitCount(winningPositions(current | move, mask));
+            if (col == hashMove) {
+                score = Integer.MAX_VALUE;
+            }
+            // Insertion sort, stable so equal scores keep the center-first order
+            int pos = count++;
+            while (pos > 0 && scores[pos - 1] < score) {
+                order[pos] = order[pos - 1];
+                scores[pos] = scores[pos - 1];
+                pos--;
+            }
+            order[pos] = col;
+            scores[pos] = score;
+        }
+        return count;
+    }
+
+    private boolean canPlay(long mask, int col) {
+        return (mask & topMask(col)) == 0;
+    }
+
+    private boolean isWinningMove(long current, long mask, int col) {
+        return (winningPositions(current, mask) & possible(mask) & columnMask(col)) != 0;
+    }
+
+    private boolean canWinNext(long current, long mask) {
+        return (winningPositions(current, mask) & possible(mask)) != 0;
+    }
+
+    // Moves that do not hand the opponent an immediate win
+    private long possibleNonLosingMoves(long current, long mask) {
+        long possible = possible(mask);
+        long opponentWins = winningPositions(current ^ mask, mask);
+        long forced = possible & opponentWins;
+        if (forced != 0) {
+            if ((forced & (forced - 1)) != 0) {
+                return 0; // Two threats at once cannot both be blocked
+            }
+            possible = forced;
+        }
+        return possible & ~(opponentWins >> 1);
+    }
+
+    private long possible(long mask) {
+        return (mask + bottomMask) & boardMask;
+    }
+
+    // Empty cells that would complete N in a row for position
+    private long winningPositions(long position, long mask) {
+        if (connect != 4) {
+            return winningPositionsN(position, mask);
+        }
+
+        // Vertical
+        long result = (position << 1) & (position << 2) & (position << 3);
+
+        // Horizontal and both diagonals
+        for (int shift = stride - 1; shift <= stride + 1; shift++) {
+            long pair = (position << shift) & (position << 2 * shift);
+            result |= pair & (position << 3 * shift);
+            result |= pair & (position >>> shift);
+            pair = (position >>> shift) & (position >>> 2 * shift);
+            result |= pair & (position << shift);
+            result |= pair & (position >>> 3 * shift);
+        }
+
+        return result & (boardMask ^ mask);
+    }
+
+    // Same as winningPositions for any N: for every direction and every place the
+    // missing coin could take in the line, AND the other N - 1 coins onto it
+    private long winningPositionsN(long position, long mask) {
+        long result = 0;
+        for (int shift : shifts) {
+            for (int gap = 0; gap < connect; gap++) {
+                long line = -1L;
+                for (int j = 0; j < connect && line != 0; j++) {
+                    if (j != gap) {
+                        line &= shiftBy(position, (gap - j) * shift);
+                    }
+                }
+                result |= line;
+            }
+        }
+        return result & (boardMask ^ mask);
+    }
+
+    private static long shiftBy(long bits, int distance) {
+        if (distance >= 64 || distance <= -64) {
+            return 0;
+        }
+        return distance >= 0 ? bits << distance : bits >>> -distance;
+    }
+
+    private long topMask(int col) {
+        return 1L << (height - 1 + col * stride);
+    }
+
+    private long columnMask(int col) {
+        return ((1L << height) - 1) << (col * stride);
+    }
+
+    public long getNodeCount() {
+        return nodes;
+    }
+}
@@ -0,0 +1,123 @@
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javafx.scene.media.AudioClip;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+
+public class SoundManager {
+
+    // Sound effects bundled in src/main/resources
+    public enum Effect {
+        RED_COIN("red_coin.mp3"),
+        YELLOW_COIN("yellow_coin.mp3"),
+        WIN("Win.mp3"),
+        BUTTON("button_press.mp3");
+
+        private final String resource;
+
+        Effect(String resource) {
+            this.resource = resource;
+        }
+    }
+
+    private static final String MUSIC_RESOURCE = "bg_music.mp3";
+    private static final double SFX_VOLUME = 0.5;
+    private static final double MUSIC_VOLUME = 0.1;
+
+    // Decoded once, then replayed from memory; AudioClip mixes overlapping plays itself.
+    // Each clip is published as soon as it is decoded, so play() never takes a lock.
+    private static final Map<Effect, AudioClip> clips = new ConcurrentHashMap<>();
+    private static volatile boolean muted;
+    private static MediaPlayer musicPlayer; // one looping player shared by every game screen
+    private static boolean musicRequested;
+
+    // Load the effects on a background thread so the first window is not held up
+    public static void preloadAsync() {
+        Thread loader = new Thread(SoundManager::preload, "connect4-sound-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Load every effect from the classpath; an effect played before its clip is loaded is
+    // skipped rather than waited for
+    public static void preload() {
+        for (Effect effect : Effect.values()) {
+            if (clips.containsKey(effect)) {
+                continue;
+            }
+            URL url = SoundManager.class.getResource("/" + effect.resource);
+            if (url == null) {
+                System.out.println("Sound effect not found: " + effect.resource);
+                continue;
+            }
+            try {
+                AudioClip clip = new AudioClip(url.toExternalForm());
+                clip.setVolume(SFX_VOLUME);
+                clips.putIfAbsent(effect, clip); // A concurrent preload may have won
+            } catch (Exception e) {
+                System.out.println("Could not load sound effect " + effect.resource + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Fire-and-forget playback, safe to call on every key press
+    public static void play(Effect effect) {
+        if (muted) {
+            return;
+        }
+        AudioClip clip = clips.get(effect);
+        if (clip != null) {
+            clip.play();
+        }
+    }
+
+    // Start the background music once; decoding happens off the JavaFX thread
+    public static synchronized void startMusic() {
+        if (musicRequested) {
+            return;
+        }
+        musicRequested = true;
+
+        Thread loader = new Thread(() -> {
+            URL url = SoundManager.class.getResource("/" + MUSIC_RESOURCE);
+            if (url == null) {
+                System.out.println("Background music not found: " + MUSIC_RESOURCE);
+                return;
+            }
+            try {
+                MediaPlayer player = new MediaPlayer(new Media(url.toExternalForm()));
+                player.setCycleCount(MediaPlayer.INDEFINITE); // Loop forever
+                player.setVolume(MUSIC_VOLUME);
+                player.setAutoPlay(true); // Starts as soon as enough is decoded
+                synchronized (SoundManager.class) {
+                    musicPlayer = player;
+                    player.setMute(muted);
+                }
+            } catch (Exception e) {
+                System.out.println("Background music error: " + e.getMessage());
+            }
+        }, "connect4-music-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public static boolean isMuted() {
+        return muted;
+    }
+
+    public static void setMuted(boolean mute) {
+        muted = mute;
+        synchronized (SoundManager.class) {
+            if (musicPlayer != null) {
+                musicPlayer.setMute(mute);
+            }
+        }
+        if (mute) {
+            for (AudioClip clip : clips.values()) {
+                clip.stop();
+            }
+        }
+    }
+}
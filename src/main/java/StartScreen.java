@@ -1,19 +1,31 @@
-import java.io.File;
+import java.io.IOException;
 
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.layout.VBox;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
 public class StartScreen {
     
     private Stage stage;
-    private MediaPlayer sfxPlayer;
+    
+    // Game server for online play, configurable with -Dconnect4.server=host:port
+    private static final String SERVER = System.getProperty("connect4.server", "localhost:" + Protocol.DEFAULT_PORT);
+    
+    // Game to watch: a game archive, or a live feed at host:port (see FeedReader), configurable with -Dconnect4.watch
+    private static final String WATCH = System.getProperty("connect4.watch", "localhost:" + Protocol.DEFAULT_FEED_PORT);
+    
+    // Board presets: {rows, cols, connect}
+    private static final int[][] BOARD_SIZES = {
+        {6, 7, 4},
+        {7, 8, 4},
+        {9, 10, 4},
+        {20, 20, 5}
+    };
     
     public StartScreen(Stage stage) {
         this.stage = stage;
@@ -24,10 +36,20 @@ public class StartScreen {
         Label welcomeLabel = new Label("Welcome to Connect 4!");
         welcomeLabel.setFont(new Font("Courier New", 32));
         
-        // Create instructions
-        Label instructionsLabel = new Label("Press keys 1-7 to drop your coin");
+        // Create instructions, following the board size picked below
+        Label instructionsLabel = new Label(GameScreen.moveHint(BOARD_SIZES[0][1]) + " to drop your coin");
         instructionsLabel.setFont(new Font("Courier New", 16));
         
+        // Create board size picker
+        ComboBox<String> sizeBox = new ComboBox<>();
+        for (int[] size : BOARD_SIZES) {
+            sizeBox.getItems().add(size[0] + " x " + size[1] + ", " + size[2] + " in a row");
+        }
+        sizeBox.getSelectionModel().select(0);
+        sizeBox.getSelectionModel().selectedIndexProperty().addListener((observable, old, index) ->
+                instructionsLabel.setText(GameScreen.moveHint(BOARD_SIZES[index.intValue()][1]) + " to drop your coin"));
+        sizeBox.setStyle("-fx-font-family: 'Courier New'; -fx-font-size: 14;");
+        
         // Create start button
         Button startButton = new Button("Start Game");
         startButton.setFont(new Font("Courier New", 20));
@@ -36,10 +58,64 @@ public class StartScreen {
         // When start button is clicked, show the game screen
         startButton.setOnAction(e -> {
             playButtonSound();
-            GameScreen gameScreen = new GameScreen(stage);
+            int[] size = BOARD_SIZES[sizeBox.getSelectionModel().getSelectedIndex()];
+            GameScreen gameScreen = new GameScreen(stage, false, size[0], size[1], size[2]);
             gameScreen.show();
         });
         
+        // Offer the last unfinished game when the match log has one (see -Dconnect4.wal)
+        MatchLog.Match resumable = GameScreen.getResumableGame();
+        Button resumeButton = new Button("Resume Game");
+        resumeButton.setFont(new Font("Courier New", 15));
+        resumeButton.setPrefSize(180, 50);
+        resumeButton.setOnAction(e -> {
+            playButtonSound();
+            GameScreen gameScreen = GameScreen.resume(stage, resumable);
+            gameScreen.show();
+        });
+        
+        // Create single-player button
+        Button computerButton = new Button("Play vs Computer");
+        computerButton.setFont(new Font("Courier New", 15));
+        computerButton.setPrefSize(180, 50);
+        
+        // When computer button is clicked, start a game against the AI
+        computerButton.setOnAction(e -> {
+            playButtonSound();
+            int[] size = BOARD_SIZES[sizeBox.getSelectionModel().getSelectedIndex()];
+            GameScreen gameScreen = new GameScreen(stage, true, size[0], size[1], size[2]);
+            gameScreen.show();
+        });
+        
+        // Create online button
+        Button onlineButton = new Button("Play Online");
+        onlineButton.setFont(new Font("Courier New", 15));
+        onlineButton.setPrefSize(180, 50);
+        
+        // When online button is clicked, wait for an opponent on the game server
+        onlineButton.setOnAction(e -> {
+            playButtonSound();
+            int[] size = BOARD_SIZES[sizeBox.getSelectionModel().getSelectedIndex()];
+            GameScreen gameScreen = new GameScreen(stage, SERVER, size[0], size[1], size[2]);
+            gameScreen.show();
+        });
+        
+        // Create watch button
+        Button watchButton = new Button("Watch Games");
+        watchButton.setFont(new Font("Courier New", 15));
+        watchButton.setPrefSize(180, 50);
+        
+        // When watch button is clicked, replay saved games or follow a live one
+        watchButton.setOnAction(e -> {
+            playButtonSound();
+            try {
+                GameScreen gameScreen = new GameScreen(stage, FeedReader.open(WATCH, GameScreen.REPLAY_SPEED));
+                gameScreen.show();
+            } catch (IOException | RuntimeException ex) {
+                instructionsLabel.setText("Nothing to watch at " + WATCH);
+            }
+        });
+        
         // Create help button
         Button helpButton = new Button("How to Play");
         helpButton.setFont(new Font("Courier New", 15));
@@ -55,7 +131,10 @@ public class StartScreen {
         // Create layout
         VBox layout = new VBox(20);
         layout.setAlignment(Pos.CENTER);
-        layout.getChildren().addAll(welcomeLabel, instructionsLabel, startButton, helpButton);
+        layout.getChildren().addAll(welcomeLabel, instructionsLabel, sizeBox, startButton, computerButton, onlineButton, watchButton, helpButton);
+        if (resumable != null) {
+            layout.getChildren().add(4, resumeButton);
+        }
         layout.setStyle("-fx-background-color: #87CEEB;");
         
         // Create scene
@@ -65,14 +144,6 @@ public class StartScreen {
     
     // Play button click sound
     private void playButtonSound() {
-        try {
-            File soundFile = new File("src/main/resources/button_press.mp3");
-            Media sound = new Media(soundFile.toURI().toString());
-            sfxPlayer = new MediaPlayer(sound);
-            sfxPlayer.setVolume(0.5);
-            sfxPlayer.play();
-        } catch (Exception e) {
-            System.out.println("Button sound not found: " + e.getMessage());
-        }
+        SoundManager.play(SoundManager.Effect.BUTTON);
     }
 }
\ No newline at end of file
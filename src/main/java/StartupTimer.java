@@ -0,0 +1,62 @@
+import java.time.Instant;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+public class StartupTimer {
+
+    // Print the timings with -Dconnect4.startup.timing=true; warn when the first
+    // frame takes longer than -Dconnect4.startup.budgetMillis
+    private static final boolean ENABLED = Boolean.getBoolean("connect4.startup.timing");
+    private static final long BUDGET_MILLIS = Long.getLong("connect4.startup.budgetMillis", 0L);
+
+    private static long mainMillis; // wall clock when main() started
+    private static StringBuilder phases = new StringBuilder();
+    private static boolean frameSeen;
+
+    // Call first thing in main()
+    public static void markMain() {
+        mainMillis = System.currentTimeMillis();
+    }
+
+    // Record how long after main() a startup phase finished
+    public static void mark(String phase) {
+        phases.append(String.format("  %-24s %6d ms after main()%n", phase, System.currentTimeMillis() - mainMillis));
+    }
+
+    // Report once the first pulse after the stage is shown has been laid out
+    public static void watchFirstFrame(Scene scene) {
+        if (!ENABLED && BUDGET_MILLIS <= 0) {
+            return;
+        }
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (frameSeen) {
+                return;
+            }
+            frameSeen = true;
+            report(System.currentTimeMillis());
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0]));
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    private static void report(long frameMillis) {
+        // Process start comes from the OS, so JVM boot and class loading are included
+        long processMillis = ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElse(mainMillis);
+        long total = frameMillis - processMillis;
+
+        if (ENABLED) {
+            System.out.println("Startup timing:");
+            System.out.printf("  %-24s %6d ms%n", "JVM start -> main()", mainMillis - processMillis);
+            System.out.print(phases);
+            System.out.printf("  %-24s %6d ms after main()%n", "first frame", frameMillis - mainMillis);
+            System.out.printf("  %-24s %6d ms%n", "JVM start -> first frame", total);
+        }
+        if (BUDGET_MILLIS > 0 && total > BUDGET_MILLIS) {
+            System.out.println("Startup took " + total + " ms, over the " + BUDGET_MILLIS + " ms budget");
+        }
+    }
+}
@@ -0,0 +1,30 @@
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+public interface Strategy {
+
+    // Column to play for player; the board must not be changed
+    int chooseMove(Board board, int player, SplittableRandom random);
+
+    String getName();
+
+    // Build a strategy factory from a spec: random, heuristic, search[:depth[:evaluator]] or mcts[:rollouts]
+    static Supplier<Strategy> fromSpec(String spec) {
+        String[] parts = spec.split(":", 3);
+        switch (parts[0]) {
+            case "random":
+                return RandomStrategy::new;
+            case "heuristic":
+                return HeuristicStrategy::new;
+            case "search":
+                int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : 8;
+                String evaluator = parts.length > 2 ? parts[2] : "none";
+                return () -> new SearchStrategy(depth, evaluator);
+            case "mcts":
+                long rollouts = parts.length > 1 ? Long.parseLong(parts[1]) : 10_000;
+                return () -> new MctsStrategy(rollouts);
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + spec);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+public class ThreatEvaluator implements Evaluator {
+
+    // Feature weights, per side; the score is ours minus the opponent's
+    public static final int OPEN_TWO = 1; // N-in-a-row window with N - 2 of our coins and the rest empty
+    public static final int OPEN_THREE = 4; // the same with N - 1 coins
+    public static final int THREAT = 3; // empty cell that would complete N in a row
+    public static final int GOOD_THREAT = 6; // threat on a row of our parity (see below)
+    public static final int CENTER = 2; // coin in the center column(s)
+
+    // Works a whole bitboard at a time: for each direction, shifted copies of the board
+    // are ANDed to find the windows of N cells that hold no opposing coin, and our coins
+    // in those windows are added up with a bit-sliced counter (4 bit planes, one count
+    // per window start). Nothing is rescanned cell by cell and nothing is allocated.
+    //
+    // Parity: when the board fills up, Red (moving first) gets the cells on odd rows
+    // counted from the bottom and Yellow the even rows, so a threat on the right parity
+    // is usually worth more than one on the wrong one.
+
+    private final int connect;
+    private final long boardMask;
+    private final long oddRows; // rows 1, 3, 5... from the bottom
+    private final long centerMask;
+    private final int[] shifts; // vertical, both diagonals, horizontal
+
+    public ThreatEvaluator(int rows, int cols, int connect) {
+        if ((rows + 1) * cols > 64) {
+            throw new IllegalArgumentException("Board " + rows + "x" + cols + " does not fit in a 64-bit bitboard");
+        }
+        if (connect < 2 || connect > 15) {
+            throw new IllegalArgumentException("connect must be between 2 and 15: " + connect);
+        }
+        this.connect = connect;
+        int stride = rows + 1;
+        long bottom = 0;
+        for (int col = 0; col < cols; col++) {
+            bottom |= 1L << (col * stride);
+        }
+        boardMask = bottom * ((1L << rows) - 1);
+        long odd = 0;
+        for (int row = 0; row < rows; row += 2) {
+            odd |= bottom << row;
+        }
+        oddRows = odd;
+        long column = (1L << rows) - 1;
+        centerMask = (column << (cols / 2 * stride)) | (column << ((cols - 1) / 2 * stride));
+        shifts = new int[]{1, stride - 1, stride, stride + 1};
+    }
+
+    @Override
+    public int evaluate(long current, long mask, int moves) {
+        long opponent = current ^ mask;
+        boolean redToMove = moves % 2 == 0;
+        return side(current, opponent, mask, redToMove) - side(opponent, current, mask, !redToMove);
+    }
+
+    // Score of one side's coins (own) against the other's
+    private int side(long own, long other, long mask, boolean red) {
+        long free = boardMask & ~other; // our coins and empty cells
+        int twos = 0;
+        int threes = 0;
+        long threats = 0;
+        for (int shift : shifts) {
+            // Windows (by their first cell) that the other side has no coin in
+            long viable = free;
+            for (int i = 1; i < connect && viable != 0; i++) {
+                viable &= shiftRight(free, i * shift);
+            }
+            if (viable == 0) {
+                continue;
+            }
+
+            // Bit-sliced count of our coins per window: c3 c2 c1 c0
+            long c0 = 0;
+            long c1 = 0;
+            long c2 = 0;
+            long c3 = 0;
+            for (int i = 0; i < connect; i++) {
+                long x = shiftRight(own, i * shift) & viable;
+                long carry = c0 & x;
+                c0 ^= x;
+                long carry1 = c1 & carry;
+                c1 ^= carry;
+                long carry2 = c2 & carry1;
+                c2 ^= carry1;
+                c3 ^= carry2;
+            }
+            twos += Long.bitCount(viable & exactly(connect - 2, c0, c1, c2, c3));
+            long almost = viable & exactly(connect - 1, c0, c1, c2, c3);
+            threes += Long.bitCount(almost);
+
+            // The empty cell of every window one coin short is a threat
+            for (int i = 0; i < connect && almost != 0; i++) {
+                threats |= shiftLeft(almost, i * shift);
+            }
+        }
+        threats &= boardMask & ~mask;
+
+        int good = Long.bitCount(threats & (red ? oddRows : ~oddRows));
+        int bad = Long.bitCount(threats) - good;
+        return OPEN_TWO * twos + OPEN_THREE * threes + GOOD_THREAT * good + THREAT * bad
+                + CENTER * Long.bitCount(own & centerMask);
+    }
+
+    // Windows whose count in the bit planes is exactly k
+    private static long exactly(int k, long c0, long c1, long c2, long c3) {
+        if (k < 0) {
+            return 0;
+        }
+        return ((k & 1) != 0 ? c0 : ~c0)
+                & ((k & 2) != 0 ? c1 : ~c1)
+                & ((k & 4) != 0 ? c2 : ~c2)
+                & ((k & 8) != 0 ? c3 : ~c3);
+    }
+
+    private static long shiftRight(long bits, int distance) {
+        return distance >= 64 ? 0 : bits >>> distance;
+    }
+
+    private static long shiftLeft(long bits, int distance) {
+        return distance >= 64 ? 0 : bits << distance;
+    }
+
+    @Override
+    public String getName() {
+        return "threat";
+    }
+}
@@ -0,0 +1,396 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+public class Tournament {
+
+    // Round robin between engine configurations (Strategy specs). Every pairing plays
+    // its games two at a time: the same random opening, once with each engine as Red.
+    // The games are cut into chunks, interleaved over the pairings so they all move
+    // forward together, and played on a work-stealing ForkJoinPool. Finished chunks
+    // are appended to a results file, one line per game; running again with the same
+    // file skips every game already in it, so a crash loses at most the chunks in
+    // flight, and a larger --games extends a finished tournament. With an SPRT a
+    // pairing stops as soon as its result is decided.
+
+    // Games per task, even so color-swapped games stay together
+    private static final int CHUNK_SIZE = 16;
+
+    private static final String HEADER = "# connect4 tournament";
+
+    private final String[] specs;
+    private final List<Supplier<Strategy>> engines = new ArrayList<>();
+    private final int rows;
+    private final int cols;
+    private final int connect;
+    private final int randomOpening;
+    private final long seed;
+    private final int[][] pairs; // {a, b} with a < b
+    private final ThreadLocal<Strategy[]> strategies;
+    private final ThreadLocal<Board> boards;
+
+    // Guarded by this
+    private final long[][] counts; // per pair: a wins, draws, b wins
+    private final BitSet[] played; // per pair: games in the results file
+    private final boolean[] decided; // per pair: SPRT reached a bound
+    private BufferedWriter results;
+    private long gamesPlayed;
+    private long gamesTotal;
+    private long nextReport;
+
+    private double[] sprt; // {elo0, elo1, lower bound, upper bound}, null = play every game
+
+    public Tournament(String[] specs, int rows, int cols, int connect, int randomOpening, long seed) {
+        if (specs.length < 2) {
+            throw new IllegalArgumentException("A tournament needs at least two engines");
+        }
+        this.specs = specs;
+        for (String spec : specs) {
+            engines.add(Strategy.fromSpec(spec));
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.connect = connect;
+        this.randomOpening = randomOpening;
+        this.seed = seed;
+        List<int[]> list = new ArrayList<>();
+        for (int a = 0; a < specs.length; a++) {
+            for (int b = a + 1; b < specs.length; b++) {
+                list.add(new int[]{a, b});
+            }
+        }
+        pairs = list.toArray(new int[0][]);
+        counts = new long[pairs.length][3];
+        played = new BitSet[pairs.length];
+        for (int p = 0; p < pairs.length; p++) {
+            played[p] = new BitSet();
+        }
+        decided = new boolean[pairs.length];
+        // One instance of every engine per worker thread, strategies keep state between moves
+        strategies = ThreadLocal.withInitial(() -> {
+            Strategy[] instances = new Strategy[engines.size()];
+            for (int i = 0; i < instances.length; i++) {
+                instances[i] = engines.get(i).get();
+            }
+            return instances;
+        });
+        boards = ThreadLocal.withInitial(() -> new Board(rows, cols, connect));
+    }
+
+    // Usage: Tournament --engines SPEC,SPEC[,...] [--games N] [--threads T] [--seed S] [--opening PLIES]
+    //                   [--results FILE] [--sprt ELO0,ELO1] [--alpha A] [--beta B]
+    //                   [--rows R] [--cols C] [--connect N]
+    // --games is per pairing (default 1000). With --sprt a pairing stops once "the first
+    // engine is ELO1 stronger" or "it is only ELO0 stronger" is accepted (alpha and beta
+    // default to 0.05). Results go to tournament.txt unless --results says otherwise.
+    public static void main(String[] args) throws IOException {
+        String[] specs = null;
+        long games = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        int opening = 4;
+        String resultsFile = "tournament.txt";
+        String sprt = null;
+        double alpha = 0.05;
+        double beta = 0.05;
+        int rows = 6;
+        int cols = 7;
+        int connect = 4;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--engines": specs = value.split(","); break;
+                case "--games": games = Long.parseLong(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--opening": opening = Integer.parseInt(value); break;
+                case "--results": resultsFile = value; break;
+                case "--sprt": sprt = value; break;
+                case "--alpha": alpha = Double.parseDouble(value); break;
+                case "--beta": beta = Double.parseDouble(value); break;
+                case "--rows": rows = Integer.parseInt(value); break;
+                case "--cols": cols = Integer.parseInt(value); break;
+                case "--connect": connect = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (specs == null) {
+            System.out.println("Usage: Tournament --engines SPEC,SPEC[,...] [--games N] [--sprt ELO0,ELO1] ...");
+            return;
+        }
+
+        Tournament tournament = new Tournament(specs, rows, cols, connect, opening, seed);
+        if (sprt != null) {
+            String[] elo = sprt.split(",");
+            tournament.setSprt(Double.parseDouble(elo[0]), Double.parseDouble(elo[1]), alpha, beta);
+        }
+        long start = System.nanoTime();
+        long resumed = tournament.run(Paths.get(resultsFile), games, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "%d new games in %.2f s (%.0f games/s) on %d threads, %d from %s%n",
+                tournament.gamesPlayed, seconds, tournament.gamesPlayed / seconds, threads, resumed, resultsFile);
+        tournament.printStandings();
+    }
+
+    // Stop a pairing once the Elo difference is shown to be elo1 (or only elo0)
+    public void setSprt(double elo0, double elo1, double alpha, double beta) {
+        double[] bounds = EloRatings.sprtBounds(alpha, beta);
+        sprt = new double[]{elo0, elo1, bounds[0], bounds[1]};
+    }
+
+    // Play up to gamesPerPairing games of every pairing that are not in the results file
+    // yet, appending to it; returns the number of games that were already there
+    public long run(Path file, long gamesPerPairing, int threads) throws IOException {
+        boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+        long resumed = load(file);
+        for (int p = 0; p < pairs.length; p++) {
+            checkSprt(p);
+        }
+
+        // Chunk c of every pairing before chunk c + 1 of any
+        List<long[]> chunks = new ArrayList<>(); // {pair, first game, end}
+        for (long first = 0; first < gamesPerPairing; first += CHUNK_SIZE) {
+            for (int p = 0; p < pairs.length; p++) {
+                long end = Math.min(gamesPerPairing, first + CHUNK_SIZE);
+                int missing = (int) (end - first) - played[p].get((int) first, (int) end).cardinality();
+                if (missing > 0 && !decided[p]) {
+                    chunks.add(new long[]{p, first, end});
+                    gamesTotal += missing;
+                }
+            }
+        }
+
+        nextReport = Math.max(1, gamesTotal / 10);
+        results = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            if (fresh) {
+                results.write(header() + "\n# pair game red yellow winner moves (winner -1 = draw)\n");
+                results.flush();
+            }
+            if (!chunks.isEmpty()) {
+                pool.invoke(new Chunks(chunks, 0, chunks.size()));
+            }
+        } finally {
+            pool.shutdown();
+            results.close();
+        }
+        return resumed;
+    }
+
+    private String header() {
+        return String.format(Locale.ROOT, "%s %dx%d connect %d, opening %d, seed %d, engines %s",
+                HEADER, rows, cols, connect, randomOpening, seed, String.join(",", specs));
+    }
+
+    // Read the games of an earlier run; a line cut off by a crash is removed
+    private long load(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        int complete = bytes.length;
+        while (complete > 0 && bytes[complete - 1] != '\n') {
+            complete--;
+        }
+        if (complete < bytes.length) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+
+        String[] lines = new String(bytes, 0, complete, StandardCharsets.UTF_8).split("\n");
+        if (!lines[0].equals(header())) {
+            throw new IOException(file + " holds a different tournament: " + lines[0]);
+        }
+        long games = 0;
+        for (String line : lines) {
+            if (line.startsWith("#") || line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split(" ");
+            int pair = Integer.parseInt(fields[0]);
+            int game = Integer.parseInt(fields[1]);
+            if (!played[pair].get(game)) {
+                played[pair].set(game);
+                count(pair, Integer.parseInt(fields[4]));
+                games++;
+            }
+        }
+        return games;
+    }
+
+    private void count(int pair, int winner) {
+        counts[pair][winner < 0 ? 1 : winner == pairs[pair][0] ? 0 : 2]++;
+    }
+
+    // Splits the chunk list in halves until one chunk is left, so idle workers steal big pieces
+    private class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<long[]> chunks;
+        private final int from;
+        private final int to;
+
+        Chunks(List<long[]> chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunks(chunks, from, middle), new Chunks(chunks, middle, to));
+                return;
+            }
+            long[] chunk = chunks.get(from);
+            try {
+                play((int) chunk[0], chunk[1], chunk[2]);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write tournament results", e);
+            }
+        }
+    }
+
+    private void play(int pair, long first, long end) throws IOException {
+        synchronized (this) {
+            if (decided[pair]) {
+                return;
+            }
+        }
+        Board board = boards.get();
+        Strategy[] instances = strategies.get();
+        Strategy[] players = new Strategy[3];
+        StringBuilder lines = new StringBuilder();
+        int[] winners = new int[(int) (end - first)];
+        for (long game = first; game < end; game++) {
+            if (isPlayed(pair, game)) {
+                winners[(int) (game - first)] = Integer.MIN_VALUE;
+                continue;
+            }
+            // Games 2k and 2k + 1 share an opening, with the colors swapped
+            int red = pairs[pair][(int) (game % 2)];
+            int yellow = pairs[pair][1 - (int) (game % 2)];
+            players[1] = instances[red];
+            players[2] = instances[yellow];
+            long gameSeed = SimulationRunner.mixSeed(seed + (pair * 0x100000000L + game / 2) * 0x9E3779B97F4A7C15L);
+            int result = SimulationRunner.playGame(board, players, randomOpening, new SplittableRandom(gameSeed), null);
+            int winnerColor = result / 1_000_000;
+            int winner = winnerColor == 0 ? -1 : winnerColor == 1 ? red : yellow;
+            winners[(int) (game - first)] = winner;
+            lines.append(pair).append(' ').append(game).append(' ').append(red).append(' ').append(yellow)
+                    .append(' ').append(winner).append(' ').append(result % 1_000_000).append('\n');
+        }
+        record(pair, first, winners, lines);
+    }
+
+    private synchronized boolean isPlayed(int pair, long game) {
+        return played[pair].get((int) game);
+    }
+
+    // Count a finished chunk and append it to the results file in one write
+    private synchronized void record(int pair, long first, int[] winners, StringBuilder lines) throws IOException {
+        results.write(lines.toString());
+        results.flush();
+        for (int i = 0; i < winners.length; i++) {
+            if (winners[i] != Integer.MIN_VALUE) {
+                played[pair].set((int) (first + i));
+                count(pair, winners[i]);
+                gamesPlayed++;
+            }
+        }
+        checkSprt(pair);
+        if (gamesPlayed >= nextReport) {
+            nextReport += Math.max(1, gamesTotal / 10);
+            System.out.printf("%d of %d games played%n", gamesPlayed, gamesTotal);
+        }
+    }
+
+    private void checkSprt(int pair) {
+        if (sprt == null || decided[pair]) {
+            return;
+        }
+        double llr = EloRatings.sprtLlr(counts[pair][0], counts[pair][1], counts[pair][2], sprt[0], sprt[1]);
+        if (llr <= sprt[2] || llr >= sprt[3]) {
+            decided[pair] = true;
+        }
+    }
+
+    public synchronized void printStandings() {
+        System.out.printf("%-36s %8s %8s %8s %7s %22s%n", "Pairing", "wins", "draws", "losses", "score", "Elo (95%)");
+        double[][] points = new double[specs.length][specs.length];
+        double[][] games = new double[specs.length][specs.length];
+        for (int p = 0; p < pairs.length; p++) {
+            int a = pairs[p][0];
+            int b = pairs[p][1];
+            long[] c = counts[p];
+            long n = c[0] + c[1] + c[2];
+            points[a][b] = c[0] + 0.5 * c[1];
+            points[b][a] = c[2] + 0.5 * c[1];
+            games[a][b] = n;
+            games[b][a] = n;
+            double[] interval = EloRatings.eloInterval(c[0], c[1], c[2]);
+            String line = String.format(Locale.ROOT, "%-36s %8d %8d %8d %6.1f%% %7s [%s, %s]",
+                    specs[a] + " vs " + specs[b], c[0], c[1], c[2], 100 * EloRatings.score(c[0], c[1], c[2]),
+                    formatElo(EloRatings.eloDifference(EloRatings.score(c[0], c[1], c[2]))),
+                    formatElo(interval[0]), formatElo(interval[1]));
+            if (sprt != null) {
+                double llr = EloRatings.sprtLlr(c[0], c[1], c[2], sprt[0], sprt[1]);
+                String verdict = llr >= sprt[3] ? "H1 accepted" : llr <= sprt[2] ? "H0 accepted" : "undecided";
+                line += String.format(Locale.ROOT, "  SPRT %s (LLR %.2f in [%.2f, %.2f])", verdict, llr, sprt[2], sprt[3]);
+            }
+            System.out.println(line);
+        }
+
+        double[][] fit = EloRatings.fit(points, games);
+        Integer[] order = new Integer[specs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(fit[0][y], fit[0][x]));
+        System.out.printf("%4s %-30s %8s %8s %8s%n", "Rank", "Engine", "Elo", "+/-", "games");
+        for (int rank = 0; rank < order.length; rank++) {
+            int i = order[rank];
+            long total = 0;
+            for (int j = 0; j < specs.length; j++) {
+                total += (long) games[i][j];
+            }
+            System.out.printf(Locale.ROOT, "%4d %-30s %8.0f %8.0f %8d%n", rank + 1, specs[i], fit[0][i], fit[1][i], total);
+        }
+    }
+
+    private static String formatElo(double elo) {
+        if (Double.isInfinite(elo)) {
+            return elo > 0 ? "+inf" : "-inf";
+        }
+        return String.format(Locale.ROOT, "%+.0f", elo);
+    }
+
+    // Games a pairing has played: {first engine wins, draws, second engine wins}
+    public synchronized long[] getCounts(int engineA, int engineB) {
+        for (int p = 0; p < pairs.length; p++) {
+            if (pairs[p][0] == engineA && pairs[p][1] == engineB) {
+                return counts[p].clone();
+            }
+        }
+        throw new IllegalArgumentException("No pairing " + engineA + " vs " + engineB);
+    }
+}
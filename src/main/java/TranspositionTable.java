@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+public class TranspositionTable {
+
+    // Entry flags
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    public static final int NO_MOVE = 63;
+
+    // Data layout: value (16 bits) | depth (7) | flag (2) | move (6) | generation (8) | valid (1)
+    private static final long VALID = 1L << 39;
+
+    // Lock-free: every slot stores (key ^ data) next to data. A slot torn by two
+    // threads writing at once no longer XORs back to its key and reads as a miss.
+    private final long[] checks;
+    private final long[] data;
+    private final int shift;
+    private volatile int generation;
+
+    public TranspositionTable(int sizeBits) {
+        checks = new long[1 << sizeBits];
+        data = new long[1 << sizeBits];
+        shift = 64 - sizeBits;
+    }
+
+    // Start a new search so entries from older ones can be replaced first
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    // Entry data for a key, or 0 when it is not in the table
+    public long probe(long key) {
+        int slot = slot(key);
+        long entry = data[slot];
+        if (entry != 0 && (checks[slot] ^ entry) == key) {
+            return entry;
+        }
+        return 0;
+    }
+
+    // Replace-by-depth: keep the deeper entry unless it is left over from an older search
+    public void store(long key, int value, int depth, int flag, int move) {
+        int slot = slot(key);
+        int gen = generation;
+        long old = data[slot];
+        if (old != 0 && (checks[slot] ^ old) != key
+                && generation(old) == gen
+                && depth(old) > depth) {
+            return;
+        }
+        long entry = (value & 0xFFFFL)
+                | ((long) depth << 16)
+                | ((long) flag << 23)
+                | ((long) move << 25)
+                | ((long) gen << 31)
+                | VALID;
+        data[slot] = entry;
+        checks[slot] = key ^ entry;
+    }
+
+    public void clear() {
+        Arrays.fill(checks, 0);
+        Arrays.fill(data, 0);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    public static int value(long entry) {
+        return (short) entry;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 16) & 0x7F;
+    }
+
+    public static int flag(long entry) {
+        return (int) (entry >>> 23) & 0x3;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry >>> 25) & 0x3F;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 31) & 0xFF;
+    }
+}